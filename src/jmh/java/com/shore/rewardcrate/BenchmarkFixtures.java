@@ -0,0 +1,57 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class BenchmarkFixtures {
+
+    static final NamespacedKey CRATE_KEY = new NamespacedKey("rewardcrate", "crate_id");
+
+    // The longest gradient name in the bundled config.
+    static final String GRADIENT_NAME = "&#00C7FF&lC&#00C7FF&lE&#00C7FF&lL&#40D2BF&lE&#80DD80&lS&#BFE840&lT&#FFF300&lI&#FFF300&lA&#FFF300&lL &#00C7FF&lL&#00C7FF&lO&#00C7FF&lO&#55D6AA&lT&#AAE455&lB&#FFF300&lO&#FFF300&lX";
+
+    private BenchmarkFixtures() {}
+
+    static YamlConfiguration bundledYaml() throws IOException {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/config.yml")) {
+            if (in == null) throw new IOException("config.yml is not on the classpath");
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return YamlConfiguration.loadConfiguration(reader);
+            }
+        }
+    }
+
+    static CrateConfig bundledConfig() throws IOException {
+        return CrateConfig.compile(bundledYaml());
+    }
+
+    static List<Map<?, ?>> bundledRawRewards() throws IOException {
+        List<Map<?, ?>> out = new ArrayList<>();
+        for (Object raw : bundledYaml().getList("rewards")) {
+            if (raw instanceof Map<?, ?> map) out.add(map);
+        }
+        return out;
+    }
+
+    // A third of the rewards have explicit tier rules, the rest rely on quality gating, like real configs.
+    static List<RewardDefinition> syntheticRewards(int size) {
+        List<RewardDefinition> rewards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Integer minTier = i % 3 == 0 ? 1 + i % 6 : null;
+            rewards.add(new RewardDefinition(
+                    Material.PAPER, 1, "&#7DFFA8$ Money #" + i, List.of("&fReceive &#7DFFA8$" + i + "&f!"), List.of(),
+                    List.of("eco give {player} " + i), false, List.of(), minTier, null, 1D + (i % 5), i));
+        }
+        return rewards;
+    }
+}
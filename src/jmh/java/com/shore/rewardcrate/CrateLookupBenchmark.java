@@ -0,0 +1,104 @@
+package com.shore.rewardcrate;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// matchCrateId runs on every interact, place and break event.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrateLookupBenchmark {
+
+    private CrateSnapshot snapshot;
+    private CrateMetrics metrics;
+    private ItemStack tagged;
+    private ItemStack untagged;
+    private ItemStack nonCrate;
+    private ItemStack paperNonCrate;
+    private ItemStack staleTagged;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MockBukkit.mock();
+        RewardCratePlugin plugin = MockBukkit.load(RewardCratePlugin.class);
+        CrateConfig config = BenchmarkFixtures.bundledConfig();
+        snapshot = CrateSnapshot.build(BenchmarkFixtures.CRATE_KEY, config, null);
+        metrics = new CrateMetrics(plugin);
+
+        List<CrateItemSpec> specs = config.crateItems();
+        CrateItemSpec last = specs.get(specs.size() - 1);
+        tagged = snapshot.crateItems().get(last.id()).clone();
+        // Same material and name but no PDC tag, like crates handed out by other plugins: resolved by the name index.
+        untagged = ItemFactory.fromCrateItemSpec(last);
+
+        // Rejected by the material prefilter before the meta is read.
+        nonCrate = named(Material.DIAMOND_SWORD, "Sharpened Sword");
+        // Crate material, so these go through the PDC read and the name index.
+        paperNonCrate = named(Material.PAPER, "Treasure Map");
+        staleTagged = named(Material.PAPER, "Old Present");
+        ItemMeta meta = staleTagged.getItemMeta();
+        // Tagged by an earlier config whose crate id no longer exists.
+        meta.getPersistentDataContainer().set(BenchmarkFixtures.CRATE_KEY, PersistentDataType.STRING, "removed");
+        staleTagged.setItemMeta(meta);
+    }
+
+    private static ItemStack named(Material material, String name) {
+        ItemStack stack = new ItemStack(material);
+        ItemMeta meta = stack.getItemMeta();
+        meta.displayName(Component.text(name));
+        stack.setItemMeta(meta);
+        return stack;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public String taggedCrate() {
+        return snapshot.matchCrateId(tagged, metrics);
+    }
+
+    @Benchmark
+    public String untaggedCrate() {
+        return snapshot.matchCrateId(untagged, metrics);
+    }
+
+    @Benchmark
+    public String nonCrateItem() {
+        return snapshot.matchCrateId(nonCrate, metrics);
+    }
+
+    @Benchmark
+    public String nonCrateSameMaterial() {
+        return snapshot.matchCrateId(paperNonCrate, metrics);
+    }
+
+    @Benchmark
+    public String staleTaggedItem() {
+        return snapshot.matchCrateId(staleTagged, metrics);
+    }
+}
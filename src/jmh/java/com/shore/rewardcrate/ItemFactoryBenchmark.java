@@ -0,0 +1,78 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Every reload builds one display item per reward. The cold variant misses the colorize cache, like a first load.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemFactoryBenchmark {
+
+    // More than the colorize cache holds, so cycling through them always misses.
+    private static final int DISTINCT_REWARDS = 2048;
+
+    private RewardDefinition plain;
+    private RewardDefinition gradient;
+    private RewardDefinition[] coldGradients;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MockBukkit.mock();
+        List<RewardDefinition> rewards = BenchmarkFixtures.bundledConfig().rewardTable().rewards();
+        plain = rewards.get(0);
+        // The hard-coded lootbox rewards are appended last; the final one has the longest gradient name.
+        gradient = rewards.get(rewards.size() - 1);
+
+        coldGradients = new RewardDefinition[DISTINCT_REWARDS];
+        for (int i = 0; i < DISTINCT_REWARDS; i++) {
+            String suffix = " &7#" + i;
+            List<String> lore = new ArrayList<>();
+            for (String line : gradient.lore()) lore.add(line + suffix);
+            coldGradients[i] = new RewardDefinition(gradient.material(), gradient.amount(), gradient.displayName() + suffix, lore,
+                    gradient.enchantments(), gradient.commands(), gradient.giveItem(), gradient.tiers(), gradient.minTier(),
+                    gradient.maxTier(), gradient.weight(), gradient.value());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public ItemStack plainReward() {
+        return ItemFactory.fromRewardDisplay(plain);
+    }
+
+    @Benchmark
+    public ItemStack gradientReward() {
+        return ItemFactory.fromRewardDisplay(gradient);
+    }
+
+    @Benchmark
+    public ItemStack gradientRewardCold() {
+        next = (next + 1) & (DISTINCT_REWARDS - 1);
+        return ItemFactory.fromRewardDisplay(coldGradients[next]);
+    }
+}
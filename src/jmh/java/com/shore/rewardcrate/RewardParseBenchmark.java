@@ -0,0 +1,42 @@
+package com.shore.rewardcrate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One reload's worth of reward parsing.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewardParseBenchmark {
+
+    private List<Map<?, ?>> rawRewards;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        rawRewards = BenchmarkFixtures.bundledRawRewards();
+    }
+
+    @Benchmark
+    public void fromRawMap(Blackhole blackhole) {
+        for (Map<?, ?> raw : rawRewards) {
+            blackhole.consume(RewardDefinition.fromRawMap(raw));
+        }
+    }
+}
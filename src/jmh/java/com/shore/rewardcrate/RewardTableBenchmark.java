@@ -0,0 +1,56 @@
+package com.shore.rewardcrate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Building the per-tier pools on reload (compile) and drawing from them on a claim (pick).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewardTableBenchmark {
+
+    private static final int MAX_TIER = 6;
+
+    @Param({"50", "500", "5000"})
+    public int catalogSize;
+
+    private List<RewardDefinition> rewards;
+    private RewardTable table;
+    private SplittableRandom random;
+    private int tier;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rewards = BenchmarkFixtures.syntheticRewards(catalogSize);
+        table = RewardTable.compile(rewards, MAX_TIER, true, false, 0.25D);
+        random = new SplittableRandom(42L);
+    }
+
+    @Benchmark
+    public RewardTable compile() {
+        return RewardTable.compile(rewards, MAX_TIER, true, false, 0.25D);
+    }
+
+    @Benchmark
+    public int pick() {
+        tier = tier == MAX_TIER ? 1 : tier + 1;
+        return table.pick(tier, random);
+    }
+}
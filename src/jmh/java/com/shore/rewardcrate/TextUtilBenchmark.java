@@ -0,0 +1,55 @@
+package com.shore.rewardcrate;
+
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextUtilBenchmark {
+
+    // More distinct names than the colorize cache holds, so cycling through them always misses.
+    private static final int DISTINCT_NAMES = 2048;
+
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = new String[DISTINCT_NAMES];
+        for (int i = 0; i < DISTINCT_NAMES; i++) {
+            names[i] = BenchmarkFixtures.GRADIENT_NAME + " &7#" + i;
+        }
+    }
+
+    @Benchmark
+    public Component colorizeCached() {
+        return TextUtil.colorize(BenchmarkFixtures.GRADIENT_NAME);
+    }
+
+    @Benchmark
+    public Component colorizeUncached() {
+        next = (next + 1) & (DISTINCT_NAMES - 1);
+        return TextUtil.colorize(names[next]);
+    }
+
+    @Benchmark
+    public String toLegacySection() {
+        return TextUtil.toLegacySection(BenchmarkFixtures.GRADIENT_NAME);
+    }
+}
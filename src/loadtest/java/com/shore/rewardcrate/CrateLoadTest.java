@@ -0,0 +1,310 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Headless load test on MockBukkit: players open, claim and close through the event bus, every player within
+// the same tick. Exits with status 1 when sessions outlive their players, timers or queued commands pile up,
+// or the retained heap grew by more than --max-heap-growth-mb since the first round.
+public final class CrateLoadTest {
+
+    // tryMarkUse ignores a second right-click within 250 ms.
+    private static final long USE_DEBOUNCE_MS = 260L;
+    private static final long AUTO_CLOSE_TICKS = 20L * 5 + 1L;
+    private static final int MAX_DRAIN_TICKS = 20 * 60;
+
+    private final Options options;
+    private final SplittableRandom random;
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final ActionStats opens = new ActionStats("open (right-click)");
+    private final ActionStats claims = new ActionStats("claim (click)");
+    private final ActionStats closes = new ActionStats("close (early)");
+    private final ActionStats quits = new ActionStats("quit");
+    private final ActionStats joins = new ActionStats("join");
+
+    private ServerMock server;
+    private RewardCratePlugin plugin;
+    private RewardCrateService service;
+    private final List<PlayerMock> players = new ArrayList<>();
+    private final List<String> failures = new ArrayList<>();
+
+    private CrateLoadTest(Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed);
+    }
+
+    public static void main(String[] args) {
+        Options options = Options.parse(args);
+        CrateLoadTest test = new CrateLoadTest(options);
+        boolean passed;
+        try {
+            passed = test.run();
+        } finally {
+            MockBukkit.unmock();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() {
+        server = MockBukkit.mock();
+        plugin = MockBukkit.load(RewardCratePlugin.class);
+        service = plugin.getCrateService();
+        List<String> crateIds = new ArrayList<>(service.getCrateItems().keySet());
+        int claimSlot = service.getGui().claimSlots().get(0);
+
+        for (int i = 0; i < options.players; i++) {
+            players.add(join());
+        }
+
+        System.out.printf(Locale.ROOT, "Load test: %d players, %d rounds, %.0f%% churn, %.0f%% early close, %d crate items, %d rewards%n",
+                options.players, options.rounds, options.churn * 100D, options.earlyClose * 100D, crateIds.size(), service.getRewards().size());
+        System.out.println("round  opened  claimed  drain-ticks  sessions  online  timers  queued  ledger  retained-MB");
+
+        long baselineRetained = -1L;
+        long lastRetained = 0L;
+        long roundStarted = 0L;
+        for (int round = 1; round <= options.rounds; round++) {
+            long wait = roundStarted + USE_DEBOUNCE_MS - System.currentTimeMillis();
+            if (wait > 0L) sleep(wait);
+            roundStarted = System.currentTimeMillis();
+
+            int opened = 0;
+            for (PlayerMock player : players) {
+                ItemStack hand = player.getInventory().getItemInMainHand();
+                if (hand.getAmount() < 2 || !service.isCrateItem(hand)) {
+                    ItemStack crate = service.getCrateItems().get(crateIds.get(random.nextInt(crateIds.size()))).clone();
+                    crate.setAmount(64);
+                    player.getInventory().setItemInMainHand(crate);
+                    hand = crate;
+                }
+                PlayerInteractEvent event = new PlayerInteractEvent(player, Action.RIGHT_CLICK_AIR, hand, null, BlockFace.SELF, EquipmentSlot.HAND);
+                opens.time(() -> server.getPluginManager().callEvent(event));
+                if (hasCrateOpen(player)) opened++;
+            }
+            server.getScheduler().performOneTick();
+
+            int claimed = 0;
+            for (PlayerMock player : players) {
+                if (!hasCrateOpen(player)) continue;
+                InventoryView view = player.getOpenInventory();
+                InventoryClickEvent event = new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER, claimSlot, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+                claims.time(() -> server.getPluginManager().callEvent(event));
+                claimed++;
+            }
+            int drainTicks = drainClaims();
+
+            for (PlayerMock player : players) {
+                if (hasCrateOpen(player) && random.nextDouble() < options.earlyClose) {
+                    closes.time(player::closeInventory);
+                }
+            }
+            // Everyone else is closed by the delayed close.
+            server.getScheduler().performTicks(AUTO_CLOSE_TICKS);
+
+            churn();
+
+            long retained = retainedHeap();
+            if (baselineRetained < 0L) baselineRetained = retained;
+            lastRetained = retained;
+            System.out.printf(Locale.ROOT, "%5d  %6d  %7d  %11d  %8d  %6d  %6d  %6d  %6d  %11.1f%n",
+                    round, opened, claimed, drainTicks, service.getSessions().size(), server.getOnlinePlayers().size(),
+                    service.getTimingWheel().size(), plugin.getCommandQueue().size(), plugin.getLedger().unfinishedCount(),
+                    retained / 1_048_576D);
+
+            check(round, opened, claimed);
+        }
+
+        report(baselineRetained, lastRetained);
+        return failures.isEmpty();
+    }
+
+    private PlayerMock join() {
+        PlayerMock[] joined = new PlayerMock[1];
+        joins.time(() -> joined[0] = server.addPlayer());
+        return joined[0];
+    }
+
+    private void churn() {
+        int leaving = (int) Math.round(players.size() * options.churn);
+        for (int i = 0; i < leaving; i++) {
+            PlayerMock player = players.remove(random.nextInt(players.size()));
+            quits.time(player::disconnect);
+            players.add(join());
+        }
+    }
+
+    private boolean hasCrateOpen(PlayerMock player) {
+        return service.isOurGui(player, player.getOpenInventory().getTopInventory());
+    }
+
+    // Returns the ticks until every claim is durable, delivered and its commands dispatched.
+    private int drainClaims() {
+        for (int ticks = 1; ticks <= MAX_DRAIN_TICKS; ticks++) {
+            // The ledger hands results back with runTask once its fsync is done.
+            sleep(1L);
+            server.getScheduler().performOneTick();
+            if (plugin.getCommandQueue().size() == 0 && plugin.getLedger().unfinishedCount() == 0) return ticks;
+        }
+        return -1;
+    }
+
+    private void check(int round, int opened, int claimed) {
+        if (opened != players.size()) {
+            failures.add("round " + round + ": only " + opened + " of " + players.size() + " players got the crate GUI");
+        }
+        if (claimed != opened) {
+            failures.add("round " + round + ": " + claimed + " claims for " + opened + " opened crates");
+        }
+        if (service.getSessions().size() > server.getOnlinePlayers().size()) {
+            failures.add("round " + round + ": " + service.getSessions().size() + " sessions for "
+                    + server.getOnlinePlayers().size() + " online players");
+        }
+        if (service.getTimingWheel().size() > 0) {
+            failures.add("round " + round + ": " + service.getTimingWheel().size() + " timers still pending after every GUI closed");
+        }
+        if (plugin.getCommandQueue().size() > 0 || plugin.getLedger().unfinishedCount() > 0) {
+            failures.add("round " + round + ": claims not drained after " + MAX_DRAIN_TICKS + " ticks");
+        }
+    }
+
+    private void report(long baselineRetained, long lastRetained) {
+        System.out.println();
+        System.out.println("action               calls      ops/s     p50 µs     p90 µs     p99 µs     max µs    alloc B/op");
+        for (ActionStats stats : List.of(opens, claims, closes, joins, quits)) {
+            System.out.println(stats.describe());
+        }
+
+        System.out.println();
+        System.out.println("Plugin timings (/rewardcrate stats):");
+        for (String line : service.getMetrics().describe()) {
+            System.out.println("  " + line.replaceAll("§.", ""));
+        }
+
+        long growth = lastRetained - baselineRetained;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Retained heap: %.1f MB after round 1, %.1f MB after round %d (%+.1f MB)%n",
+                baselineRetained / 1_048_576D, lastRetained / 1_048_576D, options.rounds, growth / 1_048_576D);
+        if (options.rounds > 1 && growth > options.maxHeapGrowthMb * 1_048_576L) {
+            failures.add(String.format(Locale.ROOT, "retained heap grew by %.1f MB (limit %d MB)", growth / 1_048_576D, options.maxHeapGrowthMb));
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("PASSED");
+            return;
+        }
+        System.out.println("FAILED:");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+    }
+
+    private long retainedHeap() {
+        // Two passes so objects freed by finalization/reference processing in the first are gone too.
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Every call's latency (for exact percentiles) and the bytes it allocated on the calling thread.
+    private final class ActionStats {
+        private final String name;
+        private long[] samples = new long[1024];
+        private int count;
+        private long totalNanos;
+        private long allocatedBytes;
+
+        ActionStats(String name) {
+            this.name = name;
+        }
+
+        void time(Runnable action) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long started = System.nanoTime();
+            action.run();
+            long elapsed = System.nanoTime() - started;
+            allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = elapsed;
+            totalNanos += elapsed;
+        }
+
+        String describe() {
+            if (count == 0) return String.format(Locale.ROOT, "%-18s %8d", name, 0);
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "%-18s %8d %10.0f %10.1f %10.1f %10.1f %10.1f %13d",
+                    name, count, count / (totalNanos / 1_000_000_000D),
+                    micros(sorted, 0.50D), micros(sorted, 0.90D), micros(sorted, 0.99D), sorted[count - 1] / 1_000D,
+                    allocatedBytes / count);
+        }
+
+        private static double micros(long[] sorted, double quantile) {
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * quantile) - 1);
+            return sorted[Math.max(0, index)] / 1_000D;
+        }
+    }
+
+    private record Options(int players, int rounds, double churn, double earlyClose, long maxHeapGrowthMb, long seed) {
+
+        static Options parse(String[] args) {
+            int players = 1000;
+            int rounds = 10;
+            double churn = 0.1D;
+            double earlyClose = 0.5D;
+            long maxHeapGrowthMb = 16L;
+            long seed = 1L;
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--players" -> players = Integer.parseInt(require(args[i], value));
+                    case "--rounds" -> rounds = Integer.parseInt(require(args[i], value));
+                    case "--churn" -> churn = Double.parseDouble(require(args[i], value));
+                    case "--early-close" -> earlyClose = Double.parseDouble(require(args[i], value));
+                    case "--max-heap-growth-mb" -> maxHeapGrowthMb = Long.parseLong(require(args[i], value));
+                    case "--seed" -> seed = Long.parseLong(require(args[i], value));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]
+                            + " (use --players, --rounds, --churn, --early-close, --max-heap-growth-mb, --seed)");
+                }
+                i++;
+            }
+            if (players < 1 || rounds < 1) throw new IllegalArgumentException("--players and --rounds must be at least 1");
+            return new Options(players, rounds, churn, earlyClose, maxHeapGrowthMb, seed);
+        }
+
+        private static String require(String option, String value) {
+            if (value == null) throw new IllegalArgumentException(option + " needs a value");
+            return value;
+        }
+    }
+}
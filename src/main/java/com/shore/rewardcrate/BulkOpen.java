@@ -0,0 +1,109 @@
+package com.shore.rewardcrate;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public final class BulkOpen {
+
+    private BulkOpen() {}
+
+    public record Settings(boolean sneakClick, int maxPerOpen) {
+
+        public static Settings fromConfig(ConfigurationSection section) {
+            if (section == null) return new Settings(true, 64);
+            return new Settings(
+                    section.getBoolean("sneak-click", true),
+                    Math.max(1, section.getInt("max", 64))
+            );
+        }
+    }
+
+    // Merged so the whole lot goes in with one addItem.
+    static ItemStack[] mergeStacks(List<ItemStack> items) {
+        List<ItemStack> kinds = new ArrayList<>();
+        List<Integer> totals = new ArrayList<>();
+        outer:
+        for (ItemStack item : items) {
+            for (int i = 0; i < kinds.size(); i++) {
+                if (kinds.get(i).isSimilar(item)) {
+                    totals.set(i, totals.get(i) + item.getAmount());
+                    continue outer;
+                }
+            }
+            kinds.add(item);
+            totals.add(item.getAmount());
+        }
+
+        List<ItemStack> out = new ArrayList<>();
+        for (int i = 0; i < kinds.size(); i++) {
+            ItemStack kind = kinds.get(i);
+            int maxStack = Math.max(1, kind.getMaxStackSize());
+            for (int left = totals.get(i); left > 0; left -= maxStack) {
+                ItemStack stack = kind.clone();
+                stack.setAmount(Math.min(left, maxStack));
+                out.add(stack);
+            }
+        }
+        return out.toArray(new ItemStack[0]);
+    }
+
+    // won: reward index (RewardTable.COAL for coal) -> times won, in the order first won.
+    static Inventory summaryInventory(UUID playerId, CrateSnapshot snapshot, int opened, Map<Integer, Integer> won) {
+        RewardCrateHolder holder = new RewardCrateHolder(playerId, true);
+        // Built directly: texts with counts in them would only fill the colorize cache with one-off entries.
+        Inventory inv = Bukkit.createInventory(holder, GuiTemplate.TYPE,
+                Component.text("Opened " + opened + (opened == 1 ? " present" : " presents"), NamedTextColor.DARK_GRAY));
+        holder.setInventory(inv);
+
+        int slot = 0;
+        int hidden = 0;
+        for (Map.Entry<Integer, Integer> entry : won.entrySet()) {
+            // Keep the last slot for the overflow note when there are more distinct rewards than slots.
+            if (slot == GuiTemplate.SIZE - 1 && won.size() > GuiTemplate.SIZE) {
+                hidden += entry.getValue();
+                continue;
+            }
+            int rewardIndex = entry.getKey();
+            ItemStack icon = rewardIndex == RewardTable.COAL
+                    ? new ItemStack(Material.COAL, 1)
+                    : snapshot.displayItem(rewardIndex);
+            inv.setItem(slot++, withCount(icon, entry.getValue()));
+        }
+        if (hidden > 0) {
+            ItemStack more = new ItemStack(Material.PAPER, 1);
+            ItemMeta meta = more.getItemMeta();
+            if (meta != null) {
+                meta.displayName(Component.text("+" + hidden + " more rewards", NamedTextColor.GRAY)
+                        .decoration(TextDecoration.ITALIC, false));
+                more.setItemMeta(meta);
+            }
+            inv.setItem(slot, more);
+        }
+        return inv;
+    }
+
+    private static ItemStack withCount(ItemStack icon, int count) {
+        icon.setAmount(Math.min(count, Math.max(1, icon.getMaxStackSize())));
+        ItemMeta meta = icon.getItemMeta();
+        if (meta == null) return icon;
+        List<Component> lore = meta.lore() == null ? new ArrayList<>() : new ArrayList<>(meta.lore());
+        lore.add(Component.text("Won ", NamedTextColor.GRAY)
+                .append(Component.text(count + "x", NamedTextColor.WHITE))
+                .decoration(TextDecoration.ITALIC, false));
+        meta.lore(lore);
+        icon.setItemMeta(meta);
+        return icon;
+    }
+}
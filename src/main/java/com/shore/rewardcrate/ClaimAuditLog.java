@@ -0,0 +1,191 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+// One line per claim in claims/claims.log, written by an async task; rotated daily or by size, then gzipped.
+public final class ClaimAuditLog {
+
+    private static final long WRITE_PERIOD_TICKS = 20L;
+    private static final String ACTIVE_NAME = "claims.log";
+
+    private record Entry(long timeMillis, UUID playerId, String playerName, String crateId, int tier, int rewardIndex, boolean coal) {}
+
+    public record Settings(boolean enabled, long maxFileBytes) {
+
+        public static Settings fromConfig(ConfigurationSection section) {
+            if (section == null) return new Settings(true, 10L * 1024L * 1024L);
+            return new Settings(
+                    section.getBoolean("enabled", true),
+                    (long) (Math.max(0.1D, section.getDouble("max-file-mb", 10D)) * 1024L * 1024L)
+            );
+        }
+    }
+
+    private final Plugin plugin;
+    private final Path directory;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+    private volatile Settings settings = Settings.fromConfig(null);
+    private BukkitTask task;
+
+    // Writer state, guarded by this.
+    private BufferedWriter writer;
+    private LocalDate fileDate;
+    private long fileBytes;
+
+    public ClaimAuditLog(Plugin plugin, Path directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+    }
+
+    public void configure(Settings settings) {
+        this.settings = settings;
+        if (settings.enabled() && task == null) {
+            task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::writePending, WRITE_PERIOD_TICKS, WRITE_PERIOD_TICKS);
+        } else if (!settings.enabled() && task != null) {
+            task.cancel();
+            task = null;
+            // Flush and close off the main thread.
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::close);
+        }
+    }
+
+    // Any thread; never blocks or touches the disk.
+    public void record(UUID playerId, String playerName, String crateId, int tier, int rewardIndex, boolean coal) {
+        if (!settings.enabled()) return;
+        pending.add(new Entry(System.currentTimeMillis(), playerId, playerName, crateId, tier, rewardIndex, coal));
+    }
+
+    public synchronized void close() {
+        writePending();
+        closeWriter();
+    }
+
+    private synchronized void writePending() {
+        if (pending.isEmpty()) return;
+        try {
+            Entry entry;
+            // Removed only once written, so an I/O error leaves it queued for the next attempt.
+            while ((entry = pending.peek()) != null) {
+                String line = format(entry);
+                long lineBytes = line.getBytes(StandardCharsets.UTF_8).length + 1L;
+                LocalDate date = Instant.ofEpochMilli(entry.timeMillis()).atZone(zone).toLocalDate();
+                openFor(date, lineBytes);
+                writer.write(line);
+                writer.newLine();
+                fileBytes += lineBytes;
+                pending.poll();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write the claim audit log", e);
+            closeWriter();
+        }
+    }
+
+    private static String format(Entry entry) {
+        return Instant.ofEpochMilli(entry.timeMillis())
+                + " player=" + entry.playerName()
+                + " uuid=" + entry.playerId()
+                + " crate=" + entry.crateId()
+                + " tier=" + entry.tier()
+                + " reward=" + entry.rewardIndex()
+                + " coal=" + entry.coal();
+    }
+
+    private void openFor(LocalDate date, long nextLineBytes) throws IOException {
+        if (writer != null && (!date.equals(fileDate) || fileBytes + nextLineBytes > settings.maxFileBytes())) {
+            LocalDate rotatedDate = fileDate;
+            closeWriter();
+            rotate(rotatedDate);
+        }
+        if (writer != null) return;
+
+        Files.createDirectories(directory);
+        Path active = directory.resolve(ACTIVE_NAME);
+        if (Files.exists(active)) {
+            LocalDate modified = Instant.ofEpochMilli(Files.getLastModifiedTime(active).toMillis()).atZone(zone).toLocalDate();
+            if (!modified.equals(date) || Files.size(active) + nextLineBytes > settings.maxFileBytes()) {
+                rotate(modified);
+            }
+        }
+        compressLeftovers();
+
+        writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(active, StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        fileDate = date;
+        fileBytes = Files.size(active);
+    }
+
+    private void rotate(LocalDate date) throws IOException {
+        Path active = directory.resolve(ACTIVE_NAME);
+        if (!Files.exists(active)) return;
+
+        int n = 0;
+        Path rotated;
+        do {
+            rotated = directory.resolve("claims-" + date + "-" + n++ + ".log");
+        } while (Files.exists(rotated) || Files.exists(gzipPath(rotated)));
+        Files.move(active, rotated);
+        compress(rotated);
+    }
+
+    private void compressLeftovers() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "claims-*.log")) {
+            for (Path file : files) {
+                compress(file);
+            }
+        }
+    }
+
+    private static void compress(Path file) throws IOException {
+        Path gz = gzipPath(file);
+        Path tmp = gz.resolveSibling(gz.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            in.transferTo(out);
+        }
+        // The .gz only ever appears complete, so one left next to its .log by a crash before the delete
+        // is simply overwritten with the same content.
+        Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(file);
+    }
+
+    private static Path gzipPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".gz");
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not close the claim audit log", e);
+        }
+        writer = null;
+        fileDate = null;
+    }
+}
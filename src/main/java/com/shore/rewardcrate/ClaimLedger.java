@@ -0,0 +1,557 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+// Write-ahead log of claims: OPEN, CLAIM, ITEM, then GRANT (or ABANDON / REFUND). Rewards are handed out
+// once their CLAIM is synced; records are group-committed on a writer thread.
+// A crash rolls players back to their last save, so recovery only acts on entries followed by a SAVED
+// (written on quit and shutdown). The rest were rolled back with the inventory and are dropped.
+public final class ClaimLedger {
+
+    private static final byte OPEN = 1;
+    private static final byte CLAIM = 2;
+    private static final byte ITEM = 3;
+    private static final byte GRANT = 4;
+    private static final byte ABANDON = 5;
+    private static final byte REFUND = 6;
+    private static final byte SAVED = 7;
+
+    private static final int MAX_BATCH = 4096;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    // Rewrite the log with only the unfinished entries once this much was appended.
+    private static final long COMPACT_AFTER_BYTES = 16L * 1024L * 1024L;
+
+    public record Settings(boolean enabled) {
+
+        public static Settings fromConfig(ConfigurationSection section) {
+            if (section == null) return new Settings(true);
+            return new Settings(section.getBoolean("enabled", true));
+        }
+    }
+
+    public static final class Entry {
+        private final long id;
+        private final UUID playerId;
+        private final String crateId;
+        private final boolean consumed;
+
+        private boolean claimed;
+        private int rewardIndex = -1;
+        private List<String> commands = List.of();
+        private byte[] item;
+        // Set while a live session or a running grant is responsible for this entry; recovery skips it.
+        private boolean owned;
+        private boolean playerSaved;
+
+        private Entry(long id, UUID playerId, String crateId, boolean consumed) {
+            this.id = id;
+            this.playerId = playerId;
+            this.crateId = crateId;
+            this.consumed = consumed;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public UUID playerId() {
+            return playerId;
+        }
+
+        public String crateId() {
+            return crateId;
+        }
+
+        public boolean consumed() {
+            return consumed;
+        }
+
+        public boolean isClaimed() {
+            return claimed;
+        }
+
+        public int rewardIndex() {
+            return rewardIndex;
+        }
+
+        public List<String> commands() {
+            return commands;
+        }
+
+        public ItemStack item() {
+            return item == null ? null : ItemStack.deserializeBytes(item);
+        }
+
+        public boolean isPlayerSaved() {
+            return playerSaved;
+        }
+    }
+
+    private record Frame(byte[] bytes, Runnable onDurable, boolean replaceFile) {}
+
+    private final Plugin plugin;
+    private final Path file;
+    private final Map<Long, Entry> unfinished = new LinkedHashMap<>();
+    private final Map<UUID, List<Entry>> byPlayer = new HashMap<>();
+    private final LinkedBlockingQueue<Frame> queue = new LinkedBlockingQueue<>();
+
+    private long nextId = 1L;
+    private long appendedBytes;
+    private boolean replayed;
+    // Owned by the writer thread while it runs; it closes the channel when it stops.
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+
+    public ClaimLedger(Plugin plugin, Path file) {
+        this.plugin = plugin;
+        this.file = file;
+    }
+
+    public void configure(Settings settings) {
+        if (settings.enabled() == running) return;
+        if (!settings.enabled()) {
+            close();
+            plugin.getLogger().info("Claim ledger disabled; claims are not protected against crashes.");
+            return;
+        }
+        try {
+            start();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open ledger.dat; claims are NOT protected against crashes.", e);
+        }
+    }
+
+    private void start() throws IOException {
+        if (!replayed) {
+            replay();
+            replayed = true;
+        }
+        Files.createDirectories(file.getParent());
+        writeCompacted(compactedLog());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "RewardCrate-Ledger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // 0 when the ledger is off.
+    public long open(UUID playerId, String crateId, boolean consumed) {
+        if (!running) return 0L;
+        Entry entry = new Entry(nextId++, playerId, crateId, consumed);
+        entry.owned = true;
+        track(entry);
+        append(encodeOpen(entry), null);
+        return entry.id;
+    }
+
+    // onDurable hands the reward out once the record is on disk. False when the crate is not in the ledger.
+    public boolean claim(long id, int rewardIndex, List<String> commands, ItemStack item, Runnable onDurable) {
+        Entry entry = unfinished.get(id);
+        if (entry == null) return false;
+        entry.claimed = true;
+        entry.rewardIndex = rewardIndex;
+        entry.commands = List.copyOf(commands);
+        entry.item = item == null ? null : item.serializeAsBytes();
+        entry.owned = true;
+        append(encodeClaim(entry), () -> {
+            // Still unfinished here means the reward is ours to hand out now.
+            if (unfinished.get(id) == entry) onDurable.run();
+        });
+        return true;
+    }
+
+    public void itemGiven(long id) {
+        Entry entry = unfinished.get(id);
+        if (entry == null) return;
+        entry.item = null;
+        append(encodeBare(ITEM, id), null);
+    }
+
+    public void granted(long id) {
+        finish(id, GRANT);
+    }
+
+    public void abandoned(long id) {
+        finish(id, ABANDON);
+    }
+
+    public void refunded(long id) {
+        finish(id, REFUND);
+    }
+
+    private void finish(long id, byte type) {
+        if (untrack(id) == null) return;
+        append(encodeBare(type, id), null);
+        if (appendedBytes > COMPACT_AFTER_BYTES) {
+            append(compactedLog(), null, true);
+        }
+    }
+
+    // E.g. the player left before the reward could be handed out.
+    public void release(long id) {
+        Entry entry = unfinished.get(id);
+        if (entry != null) entry.owned = false;
+    }
+
+    // Called right before the server saves the player's data (quit, shutdown).
+    public void playerSaved(UUID playerId) {
+        List<Entry> entries = byPlayer.get(playerId);
+        if (entries == null) return;
+        for (Entry entry : entries) entry.playerSaved = true;
+        append(encodeSaved(playerId), null);
+    }
+
+    public List<Entry> takeRecoverable(UUID playerId) {
+        List<Entry> entries = byPlayer.get(playerId);
+        if (entries == null) return List.of();
+        List<Entry> out = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!entry.owned) {
+                entry.owned = true;
+                out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    public int unfinishedCount() {
+        return unfinished.size();
+    }
+
+    // Pending callbacks are dropped; their claims are finished from the log on the next start.
+    public void close() {
+        running = false;
+        Thread thread = writer;
+        writer = null;
+        if (thread == null) return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // Closing the channel under it would fail its write; it closes the file itself if the disk recovers.
+            plugin.getLogger().severe("Claim ledger writer is still busy after 10 s; " + queue.size()
+                    + " queued record(s) may be missing from ledger.dat.");
+        }
+    }
+
+    private void append(byte[] frame, Runnable onDurable) {
+        append(frame, onDurable, false);
+    }
+
+    private void append(byte[] bytes, Runnable onDurable, boolean replaceFile) {
+        if (!running) {
+            // The log could not be opened (or is closed): keep the plugin working without crash protection.
+            if (onDurable != null) onDurable.run();
+            return;
+        }
+        appendedBytes = replaceFile ? bytes.length : appendedBytes + bytes.length;
+        queue.add(new Frame(bytes, onDurable, replaceFile));
+    }
+
+    private void writeLoop() {
+        List<Frame> batch = new ArrayList<>();
+        List<Runnable> callbacks = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            Frame first;
+            try {
+                first = queue.poll(50L, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) continue;
+
+            // Group commit: everything that queued up during the previous fsync shares this one.
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                writeBatch(batch);
+            } catch (IOException | UncheckedIOException e) {
+                // Don't hold rewards back because the disk failed; they just lose crash protection.
+                plugin.getLogger().log(Level.SEVERE, "Could not write the claim ledger", e);
+            }
+            for (Frame frame : batch) {
+                if (frame.onDurable() != null) callbacks.add(frame.onDurable());
+            }
+            batch.clear();
+
+            if (!callbacks.isEmpty()) {
+                List<Runnable> ready = List.copyOf(callbacks);
+                callbacks.clear();
+                runOnMainThread(ready);
+            }
+        }
+        try (FileChannel closing = channel) {
+            closing.force(false);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not sync the claim ledger", e);
+        }
+    }
+
+    private void writeBatch(List<Frame> batch) throws IOException {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batch.get(i).replaceFile()) continue;
+            writeFrames(batch, from, i);
+            // Compacted image of the log as of this point in the queue; replaces everything written so far.
+            channel.close();
+            writeCompacted(batch.get(i).bytes());
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            from = i + 1;
+        }
+        writeFrames(batch, from, batch.size());
+        channel.force(false);
+    }
+
+    private void writeFrames(List<Frame> batch, int from, int to) throws IOException {
+        if (from >= to) return;
+        ByteBuffer[] buffers = new ByteBuffer[to - from];
+        for (int i = from; i < to; i++) {
+            buffers[i - from] = ByteBuffer.wrap(batch.get(i).bytes());
+        }
+        long remaining = 0L;
+        for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+        while (remaining > 0L) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private void writeCompacted(byte[] content) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void runOnMainThread(List<Runnable> callbacks) {
+        try {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                for (Runnable callback : callbacks) {
+                    try {
+                        callback.run();
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.WARNING, "Granting a claimed reward failed", e);
+                    }
+                }
+            });
+        } catch (IllegalPluginAccessException e) {
+            // Disabling; these claims are finished from the log on the next start.
+        }
+    }
+
+    private byte[] compactedLog() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // In id order a player's saved entries come before the unsaved ones, so a SAVED right after each keeps that.
+        for (Entry entry : unfinished.values()) {
+            out.writeBytes(encodeOpen(entry));
+            if (entry.claimed) out.writeBytes(encodeClaim(entry));
+            if (entry.playerSaved) out.writeBytes(encodeSaved(entry.playerId));
+        }
+        return out.toByteArray();
+    }
+
+    private void track(Entry entry) {
+        unfinished.put(entry.id, entry);
+        byPlayer.computeIfAbsent(entry.playerId, id -> new ArrayList<>(2)).add(entry);
+    }
+
+    private Entry untrack(long id) {
+        Entry entry = unfinished.remove(id);
+        if (entry == null) return null;
+        List<Entry> entries = byPlayer.get(entry.playerId);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            byPlayer.remove(entry.playerId);
+        }
+        return entry;
+    }
+
+    private void replay() throws IOException {
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    throw new EOFException("bad record length " + length);
+                }
+                int crc = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (crc != checksum(payload)) {
+                    throw new EOFException("checksum mismatch");
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                records++;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (EOFException e) {
+            // A crash while appending leaves a torn last record; everything before it is intact.
+            plugin.getLogger().warning("Claim ledger ends in an incomplete record after " + records + " records; ignoring the rest.");
+        }
+        for (Entry entry : unfinished.values()) {
+            nextId = Math.max(nextId, entry.id + 1);
+        }
+        if (!unfinished.isEmpty()) {
+            plugin.getLogger().info("Claim ledger: " + unfinished.size() + " unfinished crate(s) will be refunded or granted when their players join.");
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == SAVED) {
+            List<Entry> entries = byPlayer.get(new UUID(in.readLong(), in.readLong()));
+            if (entries != null) {
+                for (Entry entry : entries) entry.playerSaved = true;
+            }
+            return;
+        }
+        long id = in.readLong();
+        nextId = Math.max(nextId, id + 1);
+        switch (type) {
+            case OPEN -> {
+                UUID playerId = new UUID(in.readLong(), in.readLong());
+                String crateId = in.readUTF();
+                boolean consumed = in.readBoolean();
+                untrack(id);
+                track(new Entry(id, playerId, crateId, consumed));
+            }
+            case CLAIM -> {
+                Entry entry = unfinished.get(id);
+                int rewardIndex = in.readInt();
+                int commandCount = in.readInt();
+                List<String> commands = new ArrayList<>(commandCount);
+                for (int i = 0; i < commandCount; i++) commands.add(in.readUTF());
+                int itemLength = in.readInt();
+                byte[] item = null;
+                if (itemLength >= 0) {
+                    item = new byte[itemLength];
+                    in.readFully(item);
+                }
+                if (entry == null) return;
+                entry.claimed = true;
+                entry.rewardIndex = rewardIndex;
+                entry.commands = List.copyOf(commands);
+                entry.item = item;
+            }
+            case ITEM -> {
+                Entry entry = unfinished.get(id);
+                if (entry != null) entry.item = null;
+            }
+            case GRANT, ABANDON, REFUND -> untrack(id);
+            default -> throw new EOFException("unknown record type " + type);
+        }
+    }
+
+    private static byte[] encodeOpen(Entry entry) {
+        return frame(out -> {
+            out.writeByte(OPEN);
+            out.writeLong(entry.id);
+            out.writeLong(entry.playerId.getMostSignificantBits());
+            out.writeLong(entry.playerId.getLeastSignificantBits());
+            out.writeUTF(entry.crateId == null ? "" : entry.crateId);
+            out.writeBoolean(entry.consumed);
+        });
+    }
+
+    private static byte[] encodeClaim(Entry entry) {
+        return frame(out -> {
+            out.writeByte(CLAIM);
+            out.writeLong(entry.id);
+            out.writeInt(entry.rewardIndex);
+            out.writeInt(entry.commands.size());
+            for (String command : entry.commands) out.writeUTF(command);
+            if (entry.item == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(entry.item.length);
+                out.write(entry.item);
+            }
+        });
+    }
+
+    private static byte[] encodeSaved(UUID playerId) {
+        return frame(out -> {
+            out.writeByte(SAVED);
+            out.writeLong(playerId.getMostSignificantBits());
+            out.writeLong(playerId.getLeastSignificantBits());
+        });
+    }
+
+    private static byte[] encodeBare(byte type, long id) {
+        return frame(out -> {
+            out.writeByte(type);
+            out.writeLong(id);
+        });
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // [int length][int crc32][payload]; the checksum catches a torn last record.
+    private static byte[] frame(PayloadWriter writer) {
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+            writer.write(new DataOutputStream(payloadBytes));
+            byte[] payload = payloadBytes.toByteArray();
+
+            ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(payload.length + 8);
+            DataOutputStream out = new DataOutputStream(frameBytes);
+            out.writeInt(payload.length);
+            out.writeInt(checksum(payload));
+            out.write(payload);
+            return frameBytes.toByteArray();
+        } catch (IOException e) {
+            // In-memory streams don't throw.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,127 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+
+public final class CommandDispatchQueue {
+
+    private final Plugin plugin;
+    private final CrateMetrics metrics;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+    private Settings settings = Settings.fromConfig(null);
+    private BukkitTask task;
+
+    private record Pending(String command, Runnable afterDispatch) {}
+
+    public record Settings(int maxPerTick, long maxNanosPerTick, boolean logCommands) {
+
+        public static Settings fromConfig(ConfigurationSection section) {
+            if (section == null) return new Settings(20, 2_000_000L, false);
+            return new Settings(
+                    Math.max(1, section.getInt("max-per-tick", 20)),
+                    (long) (Math.max(0.1D, section.getDouble("max-millis-per-tick", 2D)) * 1_000_000L),
+                    section.getBoolean("log", false)
+            );
+        }
+    }
+
+    public CommandDispatchQueue(Plugin plugin, CrateMetrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+    }
+
+    public void configure(Settings settings) {
+        this.settings = settings;
+    }
+
+    public void enqueue(String command) {
+        enqueue(command, null);
+    }
+
+    // afterDispatch runs right after the command, also when it failed.
+    public void enqueue(String command, Runnable afterDispatch) {
+        if (command == null || command.isBlank()) {
+            if (afterDispatch != null) afterDispatch.run();
+            return;
+        }
+        pending.add(new Pending(command, afterDispatch));
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() + settings.maxNanosPerTick();
+        int maxPerTick = settings.maxPerTick();
+        int dispatched = 0;
+        // Always make progress: at least one command per tick even if it alone exceeds the time budget.
+        while (!pending.isEmpty() && dispatched < maxPerTick && (dispatched == 0 || System.nanoTime() < deadline)) {
+            dispatch(pending.poll());
+            dispatched++;
+        }
+        if (pending.isEmpty()) {
+            stopTask();
+        }
+    }
+
+    private void dispatch(Pending next) {
+        dispatch(next.command());
+        if (next.afterDispatch() != null) {
+            try {
+                next.afterDispatch().run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Reward command callback failed: " + next.command(), e);
+            }
+        }
+    }
+
+    private void dispatch(String command) {
+        if (settings.logCommands()) {
+            plugin.getLogger().info("Dispatching reward command: " + command);
+        }
+        CrateEvents.CommandDispatch event = new CrateEvents.CommandDispatch();
+        event.begin();
+        long started = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+            succeeded = true;
+            metrics.commandsDispatched.increment();
+        } catch (Exception e) {
+            metrics.commandsFailed.increment();
+            plugin.getLogger().log(Level.WARNING, "Reward command failed: " + command, e);
+        } finally {
+            metrics.commandTime.recordSince(started);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = command;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+
+    public void flush() {
+        stopTask();
+        while (!pending.isEmpty()) {
+            dispatch(pending.poll());
+        }
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+// Keyed by the config.yml hash and a compiler key, so another jar recompiles even with the same version.
+public final class CompiledConfigCache {
+
+    private static final int MAGIC = 0x52434331; // "RCC1"
+    // Bump whenever the layout below changes.
+    private static final int FORMAT_VERSION = 5;
+
+    private final Path file;
+    private final String compilerKey;
+
+    public CompiledConfigCache(Path file, String compilerKey) {
+        this.file = file;
+        this.compilerKey = compilerKey;
+    }
+
+    public static String compilerKey(String pluginVersion, byte[] bundledConfig) {
+        return (pluginVersion == null ? "" : pluginVersion)
+                + " r" + CrateConfig.COMPILE_REVISION
+                + " " + HexFormat.of().formatHex(hash(bundledConfig));
+    }
+
+    public static byte[] hash(byte[] configBytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(configBytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // null when missing or written for other content, another compiler key or another format.
+    public CrateConfig read(byte[] configHash) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (!compilerKey.equals(in.readUTF())) return null;
+            byte[] storedHash = new byte[in.readUnsignedByte()];
+            in.readFully(storedHash);
+            if (!Arrays.equals(storedHash, configHash)) return null;
+            return readConfig(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (InvalidCacheException e) {
+            return null;
+        }
+    }
+
+    public void write(byte[] configHash, CrateConfig config) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(compilerKey);
+            out.writeByte(configHash.length);
+            out.write(configHash);
+            writeConfig(out, config);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeConfig(DataOutputStream out, CrateConfig config) throws IOException {
+        GuiConfig gui = config.gui();
+        writeString(out, gui.title());
+        out.writeBoolean(gui.consumeItem());
+        writeMaterial(out, gui.fillerMaterial());
+        writeString(out, gui.fillerName());
+        writeIntList(out, gui.claimSlots());
+        writeMaterial(out, gui.claimMaterial());
+        writeString(out, gui.claimName());
+        writeStringList(out, gui.claimLore());
+
+        out.writeInt(config.crateItems().size());
+        for (CrateItemSpec spec : config.crateItems()) {
+            writeString(out, spec.id());
+            writeMaterial(out, spec.material());
+            out.writeInt(spec.amount());
+            writeString(out, spec.displayName());
+            writeStringList(out, spec.lore());
+            writeStringList(out, spec.enchantments());
+            out.writeInt(spec.tier());
+        }
+
+        RewardTable table = config.rewardTable();
+        out.writeInt(table.maxTier());
+        out.writeBoolean(table.qualityGating());
+        out.writeBoolean(table.requireTierMatch());
+        out.writeDouble(table.coalChance());
+        out.writeInt(table.rewards().size());
+        for (RewardDefinition reward : table.rewards()) {
+            writeMaterial(out, reward.material());
+            out.writeInt(reward.amount());
+            writeString(out, reward.displayName());
+            writeStringList(out, reward.lore());
+            writeStringList(out, reward.enchantments());
+            writeStringList(out, reward.commands());
+            out.writeBoolean(reward.giveItem());
+            writeIntList(out, reward.tiers());
+            writeNullableInt(out, reward.minTier());
+            writeNullableInt(out, reward.maxTier());
+            out.writeDouble(reward.weight());
+            out.writeDouble(reward.value());
+        }
+
+        out.writeUTF(config.randomMode().name());
+        out.writeLong(config.randomSeed());
+        CommandDispatchQueue.Settings dispatch = config.dispatch();
+        out.writeInt(dispatch.maxPerTick());
+        out.writeLong(dispatch.maxNanosPerTick());
+        out.writeBoolean(dispatch.logCommands());
+        out.writeBoolean(config.audit().enabled());
+        out.writeLong(config.audit().maxFileBytes());
+        out.writeBoolean(config.ledger().enabled());
+        writeString(out, config.metrics().textFile());
+        out.writeLong(config.metrics().intervalTicks());
+        out.writeBoolean(config.bulkOpen().sneakClick());
+        out.writeInt(config.bulkOpen().maxPerOpen());
+        out.writeBoolean(config.watchFile());
+
+        CrateConfig.SectionDigests digests = config.digests();
+        writeString(out, digests.gui());
+        writeString(out, digests.tiers());
+        writeString(out, digests.crateItems());
+        writeString(out, digests.rewards());
+    }
+
+    private static CrateConfig readConfig(DataInputStream in) throws IOException {
+        GuiConfig gui = new GuiConfig(
+                readString(in),
+                in.readBoolean(),
+                readMaterial(in),
+                readString(in),
+                readIntList(in),
+                readMaterial(in),
+                readString(in),
+                readStringList(in)
+        );
+
+        int crateCount = in.readInt();
+        List<CrateItemSpec> crateItems = new ArrayList<>(crateCount);
+        for (int i = 0; i < crateCount; i++) {
+            crateItems.add(new CrateItemSpec(
+                    readString(in),
+                    readMaterial(in),
+                    in.readInt(),
+                    readString(in),
+                    readStringList(in),
+                    readStringList(in),
+                    in.readInt()
+            ));
+        }
+
+        int maxTier = in.readInt();
+        boolean qualityGating = in.readBoolean();
+        boolean requireTierMatch = in.readBoolean();
+        double coalChance = in.readDouble();
+        int rewardCount = in.readInt();
+        List<RewardDefinition> rewards = new ArrayList<>(rewardCount);
+        for (int i = 0; i < rewardCount; i++) {
+            rewards.add(new RewardDefinition(
+                    readMaterial(in),
+                    in.readInt(),
+                    readString(in),
+                    readStringList(in),
+                    readStringList(in),
+                    readStringList(in),
+                    in.readBoolean(),
+                    readIntList(in),
+                    readNullableInt(in),
+                    readNullableInt(in),
+                    in.readDouble(),
+                    in.readDouble()
+            ));
+        }
+        RewardTable rewardTable = RewardTable.compile(rewards, maxTier, qualityGating, requireTierMatch, coalChance);
+
+        RewardRandom.Mode randomMode = RewardRandom.Mode.parse(in.readUTF());
+        long randomSeed = in.readLong();
+        CommandDispatchQueue.Settings dispatch = new CommandDispatchQueue.Settings(in.readInt(), in.readLong(), in.readBoolean());
+        ClaimAuditLog.Settings audit = new ClaimAuditLog.Settings(in.readBoolean(), in.readLong());
+        ClaimLedger.Settings ledger = new ClaimLedger.Settings(in.readBoolean());
+        CrateMetrics.Settings metrics = new CrateMetrics.Settings(readString(in), in.readLong());
+        BulkOpen.Settings bulkOpen = new BulkOpen.Settings(in.readBoolean(), in.readInt());
+        boolean watchFile = in.readBoolean();
+
+        CrateConfig.SectionDigests digests = new CrateConfig.SectionDigests(readString(in), readString(in), readString(in), readString(in));
+
+        return new CrateConfig(gui, List.copyOf(crateItems), rewardTable, randomMode, randomSeed, dispatch, audit, ledger, metrics, bulkOpen, watchFile, digests);
+    }
+
+    // Strings are length-prefixed UTF-8 (-1 for null); writeUTF would cap them at 64 KB.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStringList(DataOutputStream out, List<String> values) throws IOException {
+        List<String> list = values == null ? List.of() : values;
+        out.writeInt(list.size());
+        for (String value : list) writeString(out, value);
+    }
+
+    private static List<String> readStringList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(readString(in));
+        return List.copyOf(out);
+    }
+
+    private static void writeIntList(DataOutputStream out, List<Integer> values) throws IOException {
+        List<Integer> list = values == null ? List.of() : values;
+        out.writeInt(list.size());
+        for (int value : list) out.writeInt(value);
+    }
+
+    private static List<Integer> readIntList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Integer> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(in.readInt());
+        return List.copyOf(out);
+    }
+
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeInt(value);
+    }
+
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeMaterial(DataOutputStream out, Material material) throws IOException {
+        out.writeUTF(material.name());
+    }
+
+    private static Material readMaterial(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        Material material = Material.matchMaterial(name);
+        // The server no longer knows this material; recompile from YAML instead of guessing.
+        if (material == null) throw new InvalidCacheException("Unknown material " + name);
+        return material;
+    }
+
+    private static final class InvalidCacheException extends IOException {
+        InvalidCacheException(String message) {
+            super(message);
+        }
+    }
+}
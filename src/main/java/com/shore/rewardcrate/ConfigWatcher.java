@@ -0,0 +1,89 @@
+package com.shore.rewardcrate;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Calls onChange on the watcher thread once the file has been quiet for a while; editors save in several steps.
+public final class ConfigWatcher {
+
+    private static final long DEBOUNCE_MILLIS = 500L;
+
+    private final Path file;
+    private final Logger logger;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private ConfigWatcher(Path file, Logger logger, Runnable onChange) throws IOException {
+        this.file = file;
+        this.logger = logger;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        // Watch the folder, not the file: many editors save by writing a new file and renaming it over the old one.
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "RewardCrate-ConfigWatcher");
+        this.thread.setDaemon(true);
+    }
+
+    public static ConfigWatcher start(Path file, Logger logger, Runnable onChange) throws IOException {
+        ConfigWatcher watcher = new ConfigWatcher(file.toAbsolutePath(), logger, onChange);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!touchesFile(watchService.take())) continue;
+
+                // Wait until config.yml itself has been quiet for the debounce window. Other files in the
+                // folder (ledger, audit log, cache, metrics) change all the time and must not extend it.
+                long lastTouched = System.nanoTime();
+                long remaining;
+                while ((remaining = lastTouched + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS) - System.nanoTime()) > 0L) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && touchesFile(key)) {
+                        lastTouched = System.nanoTime();
+                    }
+                }
+
+                try {
+                    onChange.run();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Reloading " + file.getFileName() + " after a change failed", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close() was called.
+        }
+    }
+
+    private boolean touchesFile(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+public record CrateConfig(
+        GuiConfig gui,
+        List<CrateItemSpec> crateItems,
+        RewardTable rewardTable,
+        RewardRandom.Mode randomMode,
+        long randomSeed,
+        CommandDispatchQueue.Settings dispatch,
+        ClaimAuditLog.Settings audit,
+        ClaimLedger.Settings ledger,
+        CrateMetrics.Settings metrics,
+        BulkOpen.Settings bulkOpen,
+        boolean watchFile,
+        SectionDigests digests
+) {
+
+    // Part of the compiled-config.bin key. Bump whenever compile() can produce a different result for the same
+    // config.yml (new defaults in code, hard-coded rewards, changed parsing), so old caches are not loaded.
+    public static final int COMPILE_REVISION = 2;
+
+    // Per-section hashes, so an incremental reload can tell what was edited.
+    public record SectionDigests(String gui, String tiers, String crateItems, String rewards) {
+
+        public static SectionDigests of(ConfigurationSection cfg) {
+            return new SectionDigests(
+                    digest(cfg.get("gui")),
+                    digest(cfg.get("tiers")),
+                    digest(cfg.get("crate-items")),
+                    digest(cfg.get("rewards"))
+            );
+        }
+
+        private static String digest(Object value) {
+            // Sections print their identity, so hash their flattened key/value pairs instead.
+            String text = value instanceof ConfigurationSection section
+                    ? String.valueOf(section.getValues(true))
+                    : String.valueOf(value);
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(hash);
+            } catch (NoSuchAlgorithmException e) {
+                // Every JRE ships SHA-256; fall back to the text itself rather than failing the reload.
+                return text;
+            }
+        }
+    }
+
+    // Defaults for keys missing from config.yml; shared with the simulator.
+    public static YamlConfiguration bundledDefaults() {
+        try (InputStream in = CrateConfig.class.getResourceAsStream("/config.yml")) {
+            if (in == null) return new YamlConfiguration();
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return YamlConfiguration.loadConfiguration(reader);
+            }
+        } catch (IOException e) {
+            return new YamlConfiguration();
+        }
+    }
+
+    public static CrateConfig compile(ConfigurationSection cfg) {
+        return compile(cfg, null);
+    }
+
+    // previous: sections with an unchanged digest are reused from it.
+    public static CrateConfig compile(ConfigurationSection cfg, CrateConfig previous) {
+        SectionDigests digests = SectionDigests.of(cfg);
+        SectionDigests before = previous == null ? null : previous.digests();
+
+        GuiConfig gui = before != null && before.gui().equals(digests.gui())
+                ? previous.gui()
+                : GuiConfig.fromConfig(cfg.getConfigurationSection("gui"));
+
+        List<CrateItemSpec> crateItems;
+        if (before != null && before.crateItems().equals(digests.crateItems())) {
+            crateItems = previous.crateItems();
+        } else {
+            List<CrateItemSpec> specs = new ArrayList<>();
+            ConfigurationSection crateSection = cfg.getConfigurationSection("crate-items");
+            if (crateSection != null) {
+                for (String key : crateSection.getKeys(false)) {
+                    CrateItemSpec spec = CrateItemSpec.fromConfig(key, crateSection.getConfigurationSection(key));
+                    if (spec != null) specs.add(spec);
+                }
+            }
+            crateItems = List.copyOf(specs);
+        }
+
+        // The reward pools also depend on the highest crate tier when tiers.max-tier is not set.
+        int inferredMaxTier = inferredMaxTier(crateItems);
+        RewardTable rewardTable = before != null
+                && before.tiers().equals(digests.tiers())
+                && before.rewards().equals(digests.rewards())
+                && inferredMaxTier(previous.crateItems()) == inferredMaxTier
+                ? previous.rewardTable()
+                : RewardTable.fromConfig(cfg, inferredMaxTier);
+
+        ConfigurationSection randomSection = cfg.getConfigurationSection("random");
+        RewardRandom.Mode randomMode = RewardRandom.Mode.parse(randomSection == null ? null : randomSection.getString("mode", "fast"));
+        long randomSeed = randomSection == null ? 0L : randomSection.getLong("seed", 0L);
+
+        CommandDispatchQueue.Settings dispatch = CommandDispatchQueue.Settings.fromConfig(cfg.getConfigurationSection("commands"));
+
+        ClaimAuditLog.Settings audit = ClaimAuditLog.Settings.fromConfig(cfg.getConfigurationSection("audit"));
+
+        ClaimLedger.Settings ledger = ClaimLedger.Settings.fromConfig(cfg.getConfigurationSection("ledger"));
+
+        CrateMetrics.Settings metrics = CrateMetrics.Settings.fromConfig(cfg.getConfigurationSection("metrics"));
+
+        BulkOpen.Settings bulkOpen = BulkOpen.Settings.fromConfig(cfg.getConfigurationSection("bulk-open"));
+
+        boolean watchFile = cfg.getBoolean("reload.watch-file", false);
+
+        return new CrateConfig(gui, crateItems, rewardTable, randomMode, randomSeed, dispatch, audit, ledger, metrics, bulkOpen, watchFile, digests);
+    }
+
+    private static int inferredMaxTier(List<CrateItemSpec> crateItems) {
+        int max = 1;
+        for (CrateItemSpec spec : crateItems) {
+            max = Math.max(max, spec.tier());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,128 @@
+package com.shore.rewardcrate;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR events for the hot paths. Fields are only filled in when shouldCommit() is true.
+final class CrateEvents {
+
+    private CrateEvents() {}
+
+    @Name("rewardcrate.Lookup")
+    @Label("Crate Item Lookup")
+    @Category("RewardCrate")
+    @Description("Resolving an ItemStack to a crate id (isCrateItem / matchCrateId); stacks rejected by material alone are not recorded")
+    @StackTrace(false)
+    static final class Lookup extends Event {
+        @Label("Crate Id")
+        String crateId;
+
+        @Label("Material")
+        String material;
+
+        @Label("Result")
+        @Description("tag, name or miss")
+        String result;
+
+        @Label("Name Fallback")
+        @Description("The PDC tag didn't match, so the display name index was consulted")
+        boolean nameFallback;
+    }
+
+    @Name("rewardcrate.Open")
+    @Label("Crate Open")
+    @Category("RewardCrate")
+    @StackTrace(false)
+    static final class Open extends Event {
+        @Label("Player")
+        String player;
+
+        @Label("Crate Id")
+        String crateId;
+
+        @Label("Tier")
+        int tier;
+
+        @Label("Crate Item Consumed")
+        boolean consumed;
+    }
+
+    @Name("rewardcrate.Claim")
+    @Label("Crate Claim")
+    @Category("RewardCrate")
+    @StackTrace(false)
+    static final class Claim extends Event {
+        @Label("Player")
+        String player;
+
+        @Label("Crate Id")
+        String crateId;
+
+        @Label("Tier")
+        int tier;
+
+        @Label("Reward Index")
+        @Description("-1 for coal, -2 when no reward is configured")
+        int rewardIndex;
+
+        @Label("Coal")
+        boolean coal;
+    }
+
+    @Name("rewardcrate.BulkOpen")
+    @Label("Crate Bulk Open")
+    @Category("RewardCrate")
+    @Description("A stack of crates opened at once; rolls, ledger entries and the summary GUI")
+    @StackTrace(false)
+    static final class BulkOpen extends Event {
+        @Label("Player")
+        String player;
+
+        @Label("Crate Id")
+        String crateId;
+
+        @Label("Tier")
+        int tier;
+
+        @Label("Crates")
+        int count;
+
+        @Label("Coal")
+        int coal;
+    }
+
+    @Name("rewardcrate.CommandDispatch")
+    @Label("Reward Command Dispatch")
+    @Category("RewardCrate")
+    @StackTrace(false)
+    static final class CommandDispatch extends Event {
+        @Label("Command")
+        String command;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("rewardcrate.Reload")
+    @Label("Config Reload")
+    @Category("RewardCrate")
+    @Description("Building and swapping in a compiled config; the phases field also covers the off-thread compile")
+    @StackTrace(false)
+    static final class Reload extends Event {
+        @Label("Incremental")
+        boolean incremental;
+
+        @Label("Crate Items")
+        int crateItems;
+
+        @Label("Rewards")
+        int rewards;
+
+        @Label("Phases")
+        String phases;
+    }
+}
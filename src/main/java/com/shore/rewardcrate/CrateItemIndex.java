@@ -0,0 +1,58 @@
+package com.shore.rewardcrate;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Fallback lookup by material + normalized display name, for crates without our PDC tag.
+public final class CrateItemIndex {
+
+    private static final Pattern STRIP_HEX_AMP = Pattern.compile("&#[A-Fa-f0-9]{6}");
+    private static final Pattern STRIP_LEGACY_AMP = Pattern.compile("&[0-9A-FK-ORa-fk-or]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<Material, Map<String, String>> idsByName = new EnumMap<>(Material.class);
+
+    public CrateItemIndex(Map<String, ItemStack> crateItems) {
+        for (Map.Entry<String, ItemStack> entry : crateItems.entrySet()) {
+            ItemStack configured = entry.getValue();
+            String key = nameKey(plainName(configured.getItemMeta()));
+            if (key == null) continue;
+            // First configured item wins, same as the old linear scan.
+            idsByName.computeIfAbsent(configured.getType(), m -> new HashMap<>()).putIfAbsent(key, entry.getKey());
+        }
+    }
+
+    public String findByName(Material material, ItemMeta meta) {
+        Map<String, String> byName = idsByName.get(material);
+        if (byName == null) return null;
+        String key = nameKey(plainName(meta));
+        if (key == null) return null;
+        return byName.get(key);
+    }
+
+    private static String plainName(ItemMeta meta) {
+        if (meta == null) return null;
+        Component name = meta.displayName();
+        if (name == null) return null;
+        return PlainTextComponentSerializer.plainText().serialize(name).trim();
+    }
+
+    // Comparing Components directly is brittle (different serializers can produce structurally different Components).
+    private static String nameKey(String s) {
+        if (s == null) return null;
+        String out = STRIP_HEX_AMP.matcher(s).replaceAll("");
+        out = STRIP_LEGACY_AMP.matcher(out).replaceAll("");
+        out = WHITESPACE.matcher(out).replaceAll(" ").trim();
+        if (out.isEmpty()) return null;
+        return out.toLowerCase(Locale.ROOT);
+    }
+}
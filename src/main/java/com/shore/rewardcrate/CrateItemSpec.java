@@ -0,0 +1,47 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.List;
+
+public record CrateItemSpec(
+        String id,
+        Material material,
+        int amount,
+        String displayName,
+        List<String> lore,
+        List<String> enchantments,
+        int tier
+) {
+
+    // null when the section has no valid material (such entries were always skipped).
+    public static CrateItemSpec fromConfig(String id, ConfigurationSection section) {
+        if (section == null) return null;
+        String materialStr = section.getString("material");
+        if (materialStr == null) return null;
+        Material material = Material.matchMaterial(materialStr);
+        if (material == null) return null;
+
+        // Per request: hard-code item6 to always be PAPER.
+        if (id.equalsIgnoreCase("item6")) {
+            material = Material.PAPER;
+        }
+
+        // `name` wins over `display-name` when both are set.
+        String displayName = section.getString("name", section.getString("display-name"));
+
+        int tier = section.getInt("tier", 1);
+        if (tier < 1) tier = 1;
+
+        return new CrateItemSpec(
+                id,
+                material,
+                Math.max(1, section.getInt("amount", 1)),
+                displayName,
+                List.copyOf(section.getStringList("lore")),
+                List.copyOf(section.getStringList("enchantments")),
+                tier
+        );
+    }
+}
@@ -0,0 +1,31 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.event.Event;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+// Lookups for the event being dispatched, so every handler priority reuses one result.
+final class CrateLookupCache {
+
+    static final int EVENT_ITEM = 0;
+    static final int HAND_ITEM = 1;
+
+    private static final Object UNRESOLVED = new Object();
+
+    private Event event;
+    private final Object[] results = new Object[2];
+
+    String crateId(RewardCrateService service, Event event, int slot, ItemStack stack) {
+        if (this.event != event) {
+            this.event = event;
+            Arrays.fill(results, UNRESOLVED);
+        }
+        Object cached = results[slot];
+        if (cached == UNRESOLVED) {
+            cached = service.matchCrateId(stack);
+            results[slot] = cached;
+        }
+        return (String) cached;
+    }
+}
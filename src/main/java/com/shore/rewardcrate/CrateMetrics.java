@@ -0,0 +1,209 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+public final class CrateMetrics {
+
+    // Histogram upper bounds in nanoseconds; everything slower lands in the implicit +Inf bucket.
+    private static final long[] BOUNDS_NANOS = {
+            1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L,
+            500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 50_000_000L
+    };
+
+    public final LongAdder opens = new LongAdder();
+    public final LongAdder claims = new LongAdder();
+    public final LongAdder coalRolls = new LongAdder();
+    public final LongAdder lookupTagHits = new LongAdder();
+    public final LongAdder lookupNameHits = new LongAdder();
+    public final LongAdder lookupMisses = new LongAdder();
+    // Rejected by material alone, without reading the item meta.
+    public final LongAdder lookupMaterialRejects = new LongAdder();
+    public final LongAdder commandsDispatched = new LongAdder();
+    public final LongAdder commandsFailed = new LongAdder();
+    public final LatencyHistogram commandTime = new LatencyHistogram();
+
+    private final Map<String, LatencyHistogram> handlers = new ConcurrentSkipListMap<>();
+
+    public static final class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        public long count() {
+            long count = 0L;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        public long sumNanos() {
+            return sumNanos.sum();
+        }
+
+                    // -1 when the quantile is in the +Inf bucket or nothing was recorded.
+        public long quantileUpperBoundNanos(double quantile) {
+            long count = count();
+            if (count == 0L) return -1L;
+            long target = (long) Math.ceil(count * quantile);
+            long seen = 0L;
+            for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= target) return BOUNDS_NANOS[i];
+            }
+            return -1L;
+        }
+    }
+
+    public record Settings(String textFile, long intervalTicks) {
+
+        public static Settings fromConfig(ConfigurationSection section) {
+            if (section == null) return new Settings("", 15L * 20L);
+            return new Settings(
+                    section.getString("prometheus-file", ""),
+                    Math.max(1L, section.getLong("interval-seconds", 15L)) * 20L
+            );
+        }
+    }
+
+    private final Plugin plugin;
+    private Settings settings = Settings.fromConfig(null);
+    private BukkitTask exportTask;
+
+    public CrateMetrics(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public LatencyHistogram handler(String name) {
+        return handlers.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public void configure(Settings next) {
+        if (next.equals(settings) && exportTask != null) return;
+        this.settings = next;
+        if (exportTask != null) {
+            exportTask.cancel();
+            exportTask = null;
+        }
+        if (next.textFile().isBlank()) return;
+
+        Path target = plugin.getDataFolder().toPath().resolve(next.textFile());
+        exportTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> writePrometheus(target), next.intervalTicks(), next.intervalTicks());
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("§eOpens: §f" + opens.sum() + "§e, claims: §f" + claims.sum() + "§e, coal: §f" + coalRolls.sum());
+        lines.add("§eLookups: §f" + lookupTagHits.sum() + "§e tag, §f" + lookupNameHits.sum() + "§e name fallback, §f" + lookupMisses.sum() + "§e miss, §f" + lookupMaterialRejects.sum() + "§e skipped by material");
+        lines.add("§eCommands: §f" + commandsDispatched.sum() + "§e dispatched, §f" + commandsFailed.sum() + "§e failed, " + timing(commandTime));
+        for (Map.Entry<String, LatencyHistogram> entry : handlers.entrySet()) {
+            lines.add("§7  " + entry.getKey() + ": §f" + entry.getValue().count() + "§7 calls, " + timing(entry.getValue()));
+        }
+        return lines;
+    }
+
+    private static String timing(LatencyHistogram histogram) {
+        long count = histogram.count();
+        if (count == 0L) return "§7no timings";
+        long p99 = histogram.quantileUpperBoundNanos(0.99D);
+        return String.format(Locale.ROOT, "§7avg §f%.1f µs§7, p99 §f%s§7, total §f%.1f ms",
+                histogram.sumNanos() / 1_000D / count,
+                p99 < 0L ? "> 50 ms" : "≤ " + formatMicros(p99),
+                histogram.sumNanos() / 1_000_000D);
+    }
+
+    private static String formatMicros(long nanos) {
+        return nanos >= 1_000_000L
+                ? String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000D)
+                : String.format(Locale.ROOT, "%.1f µs", nanos / 1_000D);
+    }
+
+    private void writePrometheus(Path target) {
+        StringBuilder out = new StringBuilder(4096);
+        counter(out, "rewardcrate_opens_total", "Crates opened.", opens);
+        counter(out, "rewardcrate_claims_total", "Rewards claimed, including coal.", claims);
+        counter(out, "rewardcrate_coal_total", "Claims that rolled coal.", coalRolls);
+
+        out.append("# HELP rewardcrate_lookups_total Crate item lookups by how they resolved.\n");
+        out.append("# TYPE rewardcrate_lookups_total counter\n");
+        out.append("rewardcrate_lookups_total{result=\"tag\"} ").append(lookupTagHits.sum()).append('\n');
+        out.append("rewardcrate_lookups_total{result=\"name\"} ").append(lookupNameHits.sum()).append('\n');
+        out.append("rewardcrate_lookups_total{result=\"miss\"} ").append(lookupMisses.sum()).append('\n');
+        out.append("rewardcrate_lookups_total{result=\"material\"} ").append(lookupMaterialRejects.sum()).append('\n');
+
+        counter(out, "rewardcrate_commands_dispatched_total", "Reward commands dispatched.", commandsDispatched);
+        counter(out, "rewardcrate_commands_failed_total", "Reward commands that threw.", commandsFailed);
+
+        out.append("# HELP rewardcrate_command_seconds Time spent dispatching one reward command.\n");
+        out.append("# TYPE rewardcrate_command_seconds histogram\n");
+        histogram(out, "rewardcrate_command_seconds", "", commandTime);
+
+        out.append("# HELP rewardcrate_handler_seconds Time spent in each event handler.\n");
+        out.append("# TYPE rewardcrate_handler_seconds histogram\n");
+        for (Map.Entry<String, LatencyHistogram> entry : handlers.entrySet()) {
+            histogram(out, "rewardcrate_handler_seconds", "handler=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+
+        // The textfile collector may read at any time, so never let it see a half-written file.
+        try {
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Files.writeString(tmp, out, StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write metrics to " + target, e);
+        }
+    }
+
+    private static void counter(StringBuilder out, String name, String help, LongAdder value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value.sum()).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0L;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            cumulative += histogram.buckets[i].sum();
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(seconds(BOUNDS_NANOS[i])).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += histogram.buckets[BOUNDS_NANOS.length].sum();
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffix).append(' ').append(seconds(histogram.sumNanos())).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1_000_000_000D);
+    }
+}
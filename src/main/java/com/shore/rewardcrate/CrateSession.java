@@ -0,0 +1,137 @@
+package com.shore.rewardcrate;
+
+import java.util.UUID;
+
+public final class CrateSession {
+
+    private final UUID playerId;
+
+    private boolean open;
+    private CrateSnapshot snapshot;
+    private String crateId;
+    private int tier = 1;
+    private boolean claimed;
+    private TimingWheel.Timeout closeTimeout;
+    // Claim ledger entry of the open crate until it is claimed or abandoned; 0 when there is none.
+    private long ledgerId;
+
+    private RewardCrateHolder pooledHolder;
+    private GuiTemplate pooledTemplate;
+    private long lastUseMs;
+
+    // Whether a crate item was in either hand when last checked. Only trusted during the server tick
+    // it was computed in, and only while no event marked the hands as changed since.
+    private boolean holdingCrate;
+    private int heldCheckedTick;
+    private boolean heldDirty = true;
+
+    CrateSession(UUID playerId) {
+        this.playerId = playerId;
+    }
+
+    public UUID playerId() {
+        return playerId;
+    }
+
+    void begin(CrateSnapshot snapshot, String crateId, int tier) {
+        cancelClose();
+        this.open = true;
+        this.snapshot = snapshot;
+        this.crateId = crateId;
+        this.tier = tier;
+        this.claimed = false;
+        this.ledgerId = 0L;
+    }
+
+    // The pooled inventory, debounce and held-crate flag survive until the player quits.
+    void end() {
+        cancelClose();
+        this.open = false;
+        this.snapshot = null;
+        this.crateId = null;
+        this.tier = 1;
+        this.claimed = false;
+        this.ledgerId = 0L;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // Config the open crate was started with; a reload while the GUI is open doesn't change it.
+    public CrateSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public String crateId() {
+        return crateId;
+    }
+
+    public int tier() {
+        return tier;
+    }
+
+    public boolean isClaimed() {
+        return claimed;
+    }
+
+    void markClaimed() {
+        this.claimed = true;
+    }
+
+    long ledgerId() {
+        return ledgerId;
+    }
+
+    void ledgerId(long ledgerId) {
+        this.ledgerId = ledgerId;
+    }
+
+    void scheduleClose(TimingWheel.Timeout timeout) {
+        cancelClose();
+        this.closeTimeout = timeout;
+    }
+
+    void cancelClose() {
+        if (closeTimeout != null) {
+            closeTimeout.cancel();
+            closeTimeout = null;
+        }
+    }
+
+    // Only reused for the same template; an inventory's title can't change.
+    RewardCrateHolder pooledHolder(GuiTemplate template) {
+        return pooledTemplate == template ? pooledHolder : null;
+    }
+
+    void pooledHolder(RewardCrateHolder holder, GuiTemplate template) {
+        this.pooledHolder = holder;
+        this.pooledTemplate = template;
+    }
+
+    boolean holdingCrate() {
+        return holdingCrate;
+    }
+
+    boolean heldValidAt(int tick) {
+        return !heldDirty && heldCheckedTick == tick;
+    }
+
+    void holdingCrate(boolean holdingCrate, int tick) {
+        this.holdingCrate = holdingCrate;
+        this.heldCheckedTick = tick;
+        this.heldDirty = false;
+    }
+
+    void markHeldDirty() {
+        this.heldDirty = true;
+    }
+
+    boolean tryMarkUse(long nowMs, long windowMs) {
+        if (lastUseMs != 0L && (nowMs - lastUseMs) < windowMs) {
+            return false;
+        }
+        lastUseMs = nowMs;
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Everything built from config.yml; never modified, so open sessions can keep the one they started with.
+public final class CrateSnapshot {
+
+    private final NamespacedKey crateKey;
+    private final CrateConfig config;
+    private final GuiTemplate guiTemplate;
+    private final Map<String, ItemStack> crateItems;
+    private final Map<String, Integer> crateItemTiers;
+    private final CrateItemIndex crateIndex;
+    // Materials of the configured crate items; any other stack is rejected without reading its meta.
+    private final EnumSet<Material> crateMaterials;
+    // Reward stacks are built once per reload; claims only hand out clones.
+    private final ItemStack[] giveTemplates;
+    private final ItemStack[] displayTemplates;
+
+    private CrateSnapshot(
+            NamespacedKey crateKey,
+            CrateConfig config,
+            GuiTemplate guiTemplate,
+            Map<String, ItemStack> crateItems,
+            Map<String, Integer> crateItemTiers,
+            CrateItemIndex crateIndex,
+            EnumSet<Material> crateMaterials,
+            ItemStack[] giveTemplates,
+            ItemStack[] displayTemplates
+    ) {
+        this.crateKey = crateKey;
+        this.config = config;
+        this.guiTemplate = guiTemplate;
+        this.crateItems = crateItems;
+        this.crateItemTiers = crateItemTiers;
+        this.crateIndex = crateIndex;
+        this.crateMaterials = crateMaterials;
+        this.giveTemplates = giveTemplates;
+        this.displayTemplates = displayTemplates;
+    }
+
+    // previous: parts whose source is unchanged are reused instead of rebuilt.
+    public static CrateSnapshot build(NamespacedKey crateKey, CrateConfig config, CrateSnapshot previous) {
+        CrateConfig before = previous == null ? null : previous.config;
+
+        GuiTemplate guiTemplate = before != null && before.gui().equals(config.gui())
+                ? previous.guiTemplate
+                : GuiTemplate.of(config.gui());
+
+        Map<String, ItemStack> crateItems;
+        Map<String, Integer> crateItemTiers;
+        CrateItemIndex crateIndex;
+        EnumSet<Material> crateMaterials;
+        if (before != null && before.crateItems().equals(config.crateItems())) {
+            crateItems = previous.crateItems;
+            crateItemTiers = previous.crateItemTiers;
+            crateIndex = previous.crateIndex;
+            crateMaterials = previous.crateMaterials;
+        } else {
+            Map<String, ItemStack> stacks = new LinkedHashMap<>();
+            Map<String, Integer> tiers = new LinkedHashMap<>();
+            crateMaterials = EnumSet.noneOf(Material.class);
+            for (CrateItemSpec spec : config.crateItems()) {
+                ItemStack stack = ItemFactory.fromCrateItemSpec(spec);
+                ItemFactory.tagString(stack, crateKey, spec.id());
+                stacks.put(spec.id(), stack);
+                tiers.put(spec.id(), spec.tier());
+                crateMaterials.add(stack.getType());
+            }
+            crateItems = Collections.unmodifiableMap(stacks);
+            crateItemTiers = Map.copyOf(tiers);
+            crateIndex = new CrateItemIndex(stacks);
+        }
+
+        // Tier rules don't affect the stacks, so a tiers-only change keeps the templates.
+        List<RewardDefinition> rewards = config.rewardTable().rewards();
+        ItemStack[] giveTemplates;
+        ItemStack[] displayTemplates;
+        if (before != null && before.rewardTable().rewards().equals(rewards)) {
+            giveTemplates = previous.giveTemplates;
+            displayTemplates = previous.displayTemplates;
+        } else {
+            giveTemplates = new ItemStack[rewards.size()];
+            displayTemplates = new ItemStack[rewards.size()];
+            for (int i = 0; i < rewards.size(); i++) {
+                RewardDefinition reward = rewards.get(i);
+                if (reward.giveItem()) giveTemplates[i] = ItemFactory.fromRewardGive(reward);
+                displayTemplates[i] = ItemFactory.fromRewardDisplay(reward);
+            }
+        }
+
+        return new CrateSnapshot(crateKey, config, guiTemplate, crateItems, crateItemTiers, crateIndex, crateMaterials, giveTemplates, displayTemplates);
+    }
+
+    public CrateConfig config() {
+        return config;
+    }
+
+    public GuiConfig gui() {
+        return config.gui();
+    }
+
+    public GuiTemplate guiTemplate() {
+        return guiTemplate;
+    }
+
+    public Map<String, ItemStack> crateItems() {
+        return crateItems;
+    }
+
+    public RewardTable rewardTable() {
+        return config.rewardTable();
+    }
+
+    public String matchCrateId(ItemStack stack, CrateMetrics metrics) {
+        // Almost every stack the listener sees (tools while breaking, blocks while placing) can't be a crate;
+        // reject those before cloning their meta. AIR is never in the set.
+        if (stack == null || !crateMaterials.contains(stack.getType())) {
+            metrics.lookupMaterialRejects.increment();
+            return null;
+        }
+
+        CrateEvents.Lookup event = new CrateEvents.Lookup();
+        event.begin();
+
+        String crateId = null;
+        boolean byTag = false;
+        boolean nameFallback = false;
+        ItemMeta meta = stack.getItemMeta();
+        if (meta != null) {
+            String tagged = meta.getPersistentDataContainer().get(crateKey, PersistentDataType.STRING);
+            if (tagged != null && crateItems.containsKey(tagged)) {
+                crateId = tagged;
+                byTag = true;
+            } else {
+                // Fallback: match by material + visible display name (so items given by other plugins still work)
+                crateId = crateIndex.findByName(stack.getType(), meta);
+                nameFallback = true;
+            }
+        }
+
+        String result = crateId == null ? "miss" : byTag ? "tag" : "name";
+        (crateId == null ? metrics.lookupMisses : byTag ? metrics.lookupTagHits : metrics.lookupNameHits).increment();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.crateId = crateId;
+            event.material = stack.getType().name();
+            event.result = result;
+            event.nameFallback = nameFallback;
+            event.commit();
+        }
+        return crateId;
+    }
+
+    public int tierForCrateId(String crateId) {
+        if (crateId == null) return 1;
+        return Math.max(1, crateItemTiers.getOrDefault(crateId, 1));
+    }
+
+    // null when the reward gives no item.
+    public ItemStack giveItem(int rewardIndex) {
+        ItemStack template = giveTemplates[rewardIndex];
+        return template == null ? null : template.clone();
+    }
+
+    public ItemStack displayItem(int rewardIndex) {
+        return displayTemplates[rewardIndex].clone();
+    }
+}
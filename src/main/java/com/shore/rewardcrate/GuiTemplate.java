@@ -0,0 +1,66 @@
+package com.shore.rewardcrate;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class GuiTemplate {
+
+    public static final InventoryType TYPE = InventoryType.BARREL;
+    public static final int SIZE = 27;
+
+    private final Component title;
+    private final ItemStack[] contents;
+
+    private GuiTemplate(Component title, ItemStack[] contents) {
+        this.title = title;
+        this.contents = contents;
+    }
+
+    public static GuiTemplate of(GuiConfig gui) {
+        ItemStack filler = new ItemStack(gui.fillerMaterial(), 1);
+        var fillerMeta = filler.getItemMeta();
+        if (fillerMeta != null) {
+            fillerMeta.displayName(TextUtil.colorize(gui.fillerName()));
+            filler.setItemMeta(fillerMeta);
+        }
+
+        ItemStack claim = new ItemStack(gui.claimMaterial(), 1);
+        var claimMeta = claim.getItemMeta();
+        if (claimMeta != null) {
+            claimMeta.displayName(TextUtil.colorize(gui.claimName()));
+            if (gui.claimLore() != null && !gui.claimLore().isEmpty()) {
+                List<Component> lore = new ArrayList<>();
+                for (String line : gui.claimLore()) {
+                    lore.add(TextUtil.colorize(line));
+                }
+                claimMeta.lore(lore);
+            }
+            claim.setItemMeta(claimMeta);
+        }
+
+        ItemStack[] contents = new ItemStack[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            contents[i] = filler;
+        }
+        for (int slot : gui.claimSlots()) {
+            if (slot >= 0 && slot < SIZE) {
+                contents[slot] = claim;
+            }
+        }
+
+        return new GuiTemplate(TextUtil.colorize(gui.title()), contents);
+    }
+
+    public Component title() {
+        return title;
+    }
+
+    // Shared; setContents copies each stack, so callers must not modify it.
+    ItemStack[] contents() {
+        return contents;
+    }
+}
@@ -9,7 +9,6 @@ import org.bukkit.inventory.meta.EnchantmentStorageMeta;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
-import org.bukkit.configuration.ConfigurationSection;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,39 +18,25 @@ public final class ItemFactory {
 
     private ItemFactory() {}
 
-    public static ItemStack fromSimpleItemSection(ConfigurationSection section) {
-        if (section == null) return null;
-        String materialStr = section.getString("material");
-        if (materialStr == null) return null;
-        Material material = Material.matchMaterial(materialStr);
-        if (material == null) return null;
-
-        ItemStack stack = new ItemStack(material, Math.max(1, section.getInt("amount", 1)));
+    public static ItemStack fromCrateItemSpec(CrateItemSpec spec) {
+        ItemStack stack = new ItemStack(spec.material(), spec.amount());
         ItemMeta meta = stack.getItemMeta();
         if (meta == null) return stack;
 
-        String displayName = section.getString("display-name");
-        if (displayName != null) {
-            meta.displayName(TextUtil.colorize(displayName));
-        }
-
-        String name = section.getString("name");
-        if (name != null) {
-            meta.displayName(TextUtil.colorize(name));
+        if (spec.displayName() != null) {
+            meta.displayName(TextUtil.colorize(spec.displayName()));
         }
 
-        List<String> loreStr = section.getStringList("lore");
-        if (!loreStr.isEmpty()) {
+        if (!spec.lore().isEmpty()) {
             List<net.kyori.adventure.text.Component> lore = new ArrayList<>();
-            for (String line : loreStr) {
+            for (String line : spec.lore()) {
                 lore.add(TextUtil.colorize(line));
             }
             meta.lore(lore);
         }
 
-        List<String> enchStr = section.getStringList("enchantments");
-        if (!enchStr.isEmpty()) {
-            applyEnchantments(meta, enchStr);
+        if (!spec.enchantments().isEmpty()) {
+            applyEnchantments(meta, spec.enchantments());
             meta.addItemFlags(ItemFlag.HIDE_ENCHANTS);
         }
 
@@ -0,0 +1,31 @@
+package com.shore.rewardcrate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+final class PhaseTimer {
+
+    private final long startNanos = System.nanoTime();
+    private final List<String> phases = new ArrayList<>();
+    private long lastNanos = startNanos;
+
+    void mark(String phase) {
+        long now = System.nanoTime();
+        phases.add(phase + " " + millis(now - lastNanos) + " ms");
+        lastNanos = now;
+    }
+
+    long totalMillis() {
+        return (lastNanos - startNanos) / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(", ", phases);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000D);
+    }
+}
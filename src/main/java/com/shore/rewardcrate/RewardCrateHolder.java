@@ -8,16 +8,27 @@ import java.util.UUID;
 public final class RewardCrateHolder implements InventoryHolder {
 
     private final UUID playerId;
+    // The read-only result screen of a bulk open rather than a crate with claim buttons.
+    private final boolean summary;
     private Inventory inventory;
 
     public RewardCrateHolder(UUID playerId) {
+        this(playerId, false);
+    }
+
+    public RewardCrateHolder(UUID playerId, boolean summary) {
         this.playerId = playerId;
+        this.summary = summary;
     }
 
     public UUID getPlayerId() {
         return playerId;
     }
 
+    public boolean isSummary() {
+        return summary;
+    }
+
     void setInventory(Inventory inventory) {
         this.inventory = inventory;
     }
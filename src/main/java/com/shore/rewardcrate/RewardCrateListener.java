@@ -1,7 +1,6 @@
 package com.shore.rewardcrate;
 
 import org.bukkit.Material;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
@@ -10,208 +9,356 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.Event;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 public final class RewardCrateListener implements Listener {
 
-    private RewardCrateService service;
-
-    // Prevent double-trigger (Interact + Place) from consuming twice.
-    private final Map<UUID, Long> lastUseMs = new HashMap<>();
+    private final RewardCrateService service;
+
+    // Crate lookups clone the item meta; resolve each stack once per event and share it across priorities.
+    private final CrateLookupCache lookups = new CrateLookupCache();
+
+    // Time spent in each handler, see /rewardcrate stats.
+    private final CrateMetrics.LatencyHistogram breakTime;
+    private final CrateMetrics.LatencyHistogram placeTime;
+    private final CrateMetrics.LatencyHistogram placeMonitorTime;
+    private final CrateMetrics.LatencyHistogram interactTime;
+    private final CrateMetrics.LatencyHistogram interactMonitorTime;
+    private final CrateMetrics.LatencyHistogram clickTime;
+    private final CrateMetrics.LatencyHistogram dragTime;
+    private final CrateMetrics.LatencyHistogram closeTime;
+    private final CrateMetrics.LatencyHistogram joinTime;
+    private final CrateMetrics.LatencyHistogram quitTime;
+    // Shared by the small handlers that only mark the held items as changed.
+    private final CrateMetrics.LatencyHistogram heldItemsTime;
 
     public RewardCrateListener(RewardCrateService service) {
         this.service = service;
-    }
-
-    public void setService(RewardCrateService service) {
-        this.service = service;
+        CrateMetrics metrics = service.getMetrics();
+        this.breakTime = metrics.handler("break");
+        this.placeTime = metrics.handler("place");
+        this.placeMonitorTime = metrics.handler("place_monitor");
+        this.interactTime = metrics.handler("interact");
+        this.interactMonitorTime = metrics.handler("interact_monitor");
+        this.clickTime = metrics.handler("click");
+        this.dragTime = metrics.handler("drag");
+        this.closeTime = metrics.handler("close");
+        this.joinTime = metrics.handler("join");
+        this.quitTime = metrics.handler("quit");
+        this.heldItemsTime = metrics.handler("held_items");
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onBreak(BlockBreakEvent event) {
-        Player player = event.getPlayer();
-
-        // If they are interacting with our crate GUI, block breaking should be prevented.
-        Inventory top = player.getOpenInventory().getTopInventory();
-        if (service.isOurGui(player, top)) {
-            event.setCancelled(true);
-            return;
-        }
+        long started = System.nanoTime();
+        try {
+            Player player = event.getPlayer();
+
+            // If they are interacting with our crate GUI, block breaking should be prevented.
+            if (service.hasCrateGuiOpen(player)) {
+                event.setCancelled(true);
+                return;
+            }
 
-        // Also prevent block breaking while holding a crate item (mainhand or offhand).
-        ItemStack main = player.getInventory().getItemInMainHand();
-        ItemStack off = player.getInventory().getItemInOffHand();
-        if (service.isCrateItem(main) || service.isCrateItem(off)) {
-            event.setCancelled(true);
+            // Also prevent block breaking while holding a crate item (mainhand or offhand).
+            if (service.isHoldingCrate(player)) {
+                event.setCancelled(true);
+            }
+        } finally {
+            breakTime.recordSince(started);
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = false)
     public void onPlace(BlockPlaceEvent event) {
-        Player player = event.getPlayer();
-        ItemStack byEvent = event.getItemInHand();
-        ItemStack byHand = (event.getHand() == EquipmentSlot.OFF_HAND)
-                ? player.getInventory().getItemInOffHand()
-                : player.getInventory().getItemInMainHand();
+        long started = System.nanoTime();
+        try {
+            if (!isPlacingCrateItem(event)) {
+                return;
+            }
 
-        if (!service.isCrateItem(byEvent) && !service.isCrateItem(byHand)) {
-            return;
+            // Safety net: never allow the present item to be placed as a block.
+            event.setCancelled(true);
+        } finally {
+            placeTime.recordSince(started);
         }
-
-        // Safety net: never allow the present item to be placed as a block.
-        event.setCancelled(true);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = false)
     public void onPlaceMonitor(BlockPlaceEvent event) {
-        // Last-chance guard: some plugins may uncancel after earlier handlers.
+        long started = System.nanoTime();
+        try {
+            // Last-chance guard: some plugins may uncancel after earlier handlers.
+            if (!isPlacingCrateItem(event)) return;
+            event.setCancelled(true);
+        } finally {
+            placeMonitorTime.recordSince(started);
+        }
+    }
+
+    private boolean isPlacingCrateItem(BlockPlaceEvent event) {
+        if (lookups.crateId(service, event, CrateLookupCache.EVENT_ITEM, event.getItemInHand()) != null) return true;
         Player player = event.getPlayer();
-        ItemStack byEvent = event.getItemInHand();
+        // The hand normally holds the same stack as the event; only look again when a crate is held at all.
+        if (!service.isHoldingCrate(player)) return false;
         ItemStack byHand = (event.getHand() == EquipmentSlot.OFF_HAND)
                 ? player.getInventory().getItemInOffHand()
                 : player.getInventory().getItemInMainHand();
-        if (!service.isCrateItem(byEvent) && !service.isCrateItem(byHand)) return;
-        event.setCancelled(true);
+        return lookups.crateId(service, event, CrateLookupCache.HAND_ITEM, byHand) != null;
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onInteract(PlayerInteractEvent event) {
-        if (event.getHand() == null) return;
-        // Paper fires interact twice (main hand + offhand). Only handle main hand to avoid consuming twice.
-        if (event.getHand() != EquipmentSlot.HAND) return;
-
-        Action action = event.getAction();
-        if (action != Action.RIGHT_CLICK_AIR && action != Action.RIGHT_CLICK_BLOCK) return;
-
-        Player player = event.getPlayer();
-        ItemStack stack = event.getItem();
-        if (stack == null || stack.getType() == Material.AIR) return;
-        if (!service.isCrateItem(stack)) {
-            return;
-        }
-
-        String crateId = service.matchCrateId(stack);
-        if (crateId == null) {
-            return;
-        }
+        long started = System.nanoTime();
+        try {
+            if (event.getHand() == null) return;
+            // Paper fires interact twice (main hand + offhand). Only handle main hand to avoid consuming twice.
+            if (event.getHand() != EquipmentSlot.HAND) return;
+
+            Action action = event.getAction();
+            if (action != Action.RIGHT_CLICK_AIR && action != Action.RIGHT_CLICK_BLOCK) return;
+
+            Player player = event.getPlayer();
+            ItemStack stack = event.getItem();
+            if (stack == null || stack.getType() == Material.AIR) return;
+
+            String crateId = lookups.crateId(service, event, CrateLookupCache.EVENT_ITEM, stack);
+            if (crateId == null) {
+                return;
+            }
 
-        // Prevent placement and block interaction when using a present.
-        event.setCancelled(true);
-        event.setUseItemInHand(Event.Result.DENY);
-        event.setUseInteractedBlock(Event.Result.DENY);
+            // Prevent placement and block interaction when using a present.
+            event.setCancelled(true);
+            event.setUseItemInHand(Event.Result.DENY);
+            event.setUseInteractedBlock(Event.Result.DENY);
 
-        // Prevent double-trigger (Interact + Place) from consuming twice.
-        if (!tryMarkUse(player)) {
-            return;
-        }
+            // Prevent double-trigger (Interact + Place) from consuming twice.
+            if (!service.tryMarkUse(player)) {
+                return;
+            }
 
-        // ItemsAdder (and some similar plugins) can place blocks programmatically even if events are cancelled.
-        // Capture the *expected* placement target and revert it next tick if it gets placed anyway.
-        Location placeLoc = null;
-        Material beforeType = null;
-        Material expectedPlacedType = stack.getType();
-        if (action == Action.RIGHT_CLICK_BLOCK && event.getClickedBlock() != null && event.getBlockFace() != null) {
-            Block target = event.getClickedBlock().getRelative(event.getBlockFace());
-            placeLoc = target.getLocation();
-            beforeType = target.getType();
-        }
+            // ItemsAdder (and some similar plugins) can place blocks programmatically even if events are cancelled.
+            // Capture the *expected* placement target and revert it next tick if it gets placed anyway.
+            Location placeLoc = null;
+            Material beforeType = null;
+            Material expectedPlacedType = stack.getType();
+            if (action == Action.RIGHT_CLICK_BLOCK && event.getClickedBlock() != null && event.getBlockFace() != null) {
+                Block target = event.getClickedBlock().getRelative(event.getBlockFace());
+                placeLoc = target.getLocation();
+                beforeType = target.getType();
+            }
 
-        consumeIfEnabled(player, event.getHand());
-        service.openCrate(player, crateId);
+            // Bulk open needs consumption; otherwise the stack would be a free multiplier.
+            if (player.isSneaking() && stack.getAmount() > 1 && service.getBulkOpen().sneakClick()
+                    && service.getGui().consumeItem() && player.hasPermission("rewardcrate.bulkopen")) {
+                // Sneak + right-click opens the whole stack with one summary screen.
+                service.bulkOpen(player, event.getHand(), stack.getAmount());
+            } else {
+                boolean consumed = consumeIfEnabled(player, event.getHand());
+                service.openCrate(player, crateId, consumed);
+            }
 
-        if (placeLoc != null && beforeType != null) {
-            final Location finalPlaceLoc = placeLoc;
-            final Material finalBeforeType = beforeType;
-            Bukkit.getScheduler().runTask(service.getPlugin(), () -> {
-                Block target = finalPlaceLoc.getBlock();
-                // Only revert if it changed into the same type as the present item.
-                if (target.getType() == expectedPlacedType && finalBeforeType != expectedPlacedType) {
-                    target.setType(finalBeforeType, false);
-                }
-            });
+            if (placeLoc != null && beforeType != null) {
+                final Location finalPlaceLoc = placeLoc;
+                final Material finalBeforeType = beforeType;
+                service.getTimingWheel().schedule(1L, () -> {
+                    Block target = finalPlaceLoc.getBlock();
+                    // Only revert if it changed into the same type as the present item.
+                    if (target.getType() == expectedPlacedType && finalBeforeType != expectedPlacedType) {
+                        target.setType(finalBeforeType, false);
+                    }
+                });
+            }
+        } finally {
+            interactTime.recordSince(started);
         }
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = false)
     public void onInteractMonitor(PlayerInteractEvent event) {
-        // Last-chance guard: prevent vanilla block placement/interaction with present items.
-        if (event.getHand() == null) return;
-        if (event.getHand() != EquipmentSlot.HAND) return;
+        long started = System.nanoTime();
+        try {
+            // Last-chance guard: prevent vanilla block placement/interaction with present items.
+            if (event.getHand() == null) return;
+            if (event.getHand() != EquipmentSlot.HAND) return;
 
-        Action action = event.getAction();
-        if (action != Action.RIGHT_CLICK_AIR && action != Action.RIGHT_CLICK_BLOCK) return;
+            Action action = event.getAction();
+            if (action != Action.RIGHT_CLICK_AIR && action != Action.RIGHT_CLICK_BLOCK) return;
 
-        ItemStack stack = event.getItem();
-        if (stack == null || stack.getType() == Material.AIR) return;
-        if (!service.isCrateItem(stack)) return;
+            ItemStack stack = event.getItem();
+            if (stack == null || stack.getType() == Material.AIR) return;
+            if (lookups.crateId(service, event, CrateLookupCache.EVENT_ITEM, stack) == null) return;
 
-        event.setCancelled(true);
-        event.setUseItemInHand(Event.Result.DENY);
-        event.setUseInteractedBlock(Event.Result.DENY);
+            event.setCancelled(true);
+            event.setUseItemInHand(Event.Result.DENY);
+            event.setUseInteractedBlock(Event.Result.DENY);
+        } finally {
+            interactMonitorTime.recordSince(started);
+        }
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onClick(InventoryClickEvent event) {
-        if (!(event.getWhoClicked() instanceof Player player)) return;
-
-        Inventory top = event.getView().getTopInventory();
-        if (!service.isOurGui(player, top)) {
-            return;
-        }
+        long started = System.nanoTime();
+        try {
+            if (!(event.getWhoClicked() instanceof Player player)) return;
+            // Clicks (including hotbar keys and creative picks) can move a crate into a hand.
+            service.markHeldItemsChanged(player);
+
+            Inventory top = event.getView().getTopInventory();
+            if (!service.isOurGui(player, top)) {
+                return;
+            }
 
-        event.setCancelled(true);
+            event.setCancelled(true);
+            if (service.isSummaryGui(top)) return;
 
-        int rawSlot = event.getRawSlot();
-        if (rawSlot < 0 || rawSlot >= top.getSize()) return;
+            int rawSlot = event.getRawSlot();
+            if (rawSlot < 0 || rawSlot >= top.getSize()) return;
 
-        if (!service.getGui().claimSlots().contains(rawSlot)) return;
-        if (!service.canClaim(player)) return;
+            if (!service.isClaimSlot(player, rawSlot)) return;
+            if (!service.canClaim(player)) return;
 
-        service.markClaimed(player);
-        ItemStack display = service.claimRandomReward(player);
-        if (display != null) {
-            top.setItem(rawSlot, display);
+            service.markClaimed(player);
+            ItemStack display = service.claimRandomReward(player);
+            if (display != null) {
+                top.setItem(rawSlot, display);
+            }
+            // Per request: don't close immediately; close 5 seconds after claiming.
+            service.scheduleDelayedClose(player, 20L * 5);
+        } finally {
+            clickTime.recordSince(started);
         }
-        // Per request: don't close immediately; close 5 seconds after claiming.
-        service.scheduleDelayedClose(player, 20L * 5);
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onDrag(InventoryDragEvent event) {
-        if (!(event.getWhoClicked() instanceof Player player)) return;
-        Inventory top = event.getView().getTopInventory();
-        if (!service.isOurGui(player, top)) return;
-        event.setCancelled(true);
+        long started = System.nanoTime();
+        try {
+            if (!(event.getWhoClicked() instanceof Player player)) return;
+            service.markHeldItemsChanged(player);
+            Inventory top = event.getView().getTopInventory();
+            if (!service.isOurGui(player, top)) return;
+            event.setCancelled(true);
+        } finally {
+            dragTime.recordSince(started);
+        }
     }
 
     @EventHandler
     public void onClose(InventoryCloseEvent event) {
-        if (!(event.getPlayer() instanceof Player player)) return;
-        if (!service.isOurGui(player, event.getView().getTopInventory())) {
-            return;
+        long started = System.nanoTime();
+        try {
+            if (!(event.getPlayer() instanceof Player player)) return;
+            if (!service.isOurGui(player, event.getView().getTopInventory())) {
+                return;
+            }
+            // Per request: if the player closes early, cancel the pending auto-close.
+            service.cancelDelayedClose(player);
+            service.clearSession(player);
+        } finally {
+            closeTime.recordSince(started);
+        }
+    }
+
+    // The held-item events fire before the change happens, so they only mark the cached flag as stale.
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHeld(PlayerItemHeldEvent event) {
+        long started = System.nanoTime();
+        try {
+            service.markHeldItemsChanged(event.getPlayer());
+        } finally {
+            heldItemsTime.recordSince(started);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        long started = System.nanoTime();
+        try {
+            service.markHeldItemsChanged(event.getPlayer());
+        } finally {
+            heldItemsTime.recordSince(started);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        long started = System.nanoTime();
+        try {
+            if (event.getEntity() instanceof Player player) {
+                service.markHeldItemsChanged(player);
+            }
+        } finally {
+            heldItemsTime.recordSince(started);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent event) {
+        long started = System.nanoTime();
+        try {
+            service.markHeldItemsChanged(event.getPlayer());
+        } finally {
+            heldItemsTime.recordSince(started);
         }
-        // Per request: if the player closes early, cancel the pending auto-close.
-        service.cancelDelayedClose(player);
-        service.clearSession(player);
     }
 
-    private void consumeIfEnabled(Player player, EquipmentSlot slot) {
-        if (!service.getGui().consumeItem()) return;
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        long started = System.nanoTime();
+        try {
+            service.markHeldItemsChanged(event.getPlayer());
+        } finally {
+            heldItemsTime.recordSince(started);
+        }
+    }
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent event) {
+        long started = System.nanoTime();
+        try {
+            // Refund or finish crates that a crash or restart interrupted.
+            service.recoverClaims(event.getPlayer());
+            service.markHeldItemsChanged(event.getPlayer());
+        } finally {
+            joinTime.recordSince(started);
+        }
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        long started = System.nanoTime();
+        try {
+            service.releasePlayer(event.getPlayer());
+        } finally {
+            quitTime.recordSince(started);
+        }
+    }
+
+    private boolean consumeIfEnabled(Player player, EquipmentSlot slot) {
+        if (!service.getGui().consumeItem()) return false;
+        // The last crate of the stack may be used up.
+        service.markHeldItemsChanged(player);
 
         ItemStack item = (slot == EquipmentSlot.OFF_HAND) ? player.getInventory().getItemInOffHand() : player.getInventory().getItemInMainHand();
-        if (item == null || item.getType() == Material.AIR) return;
+        if (item == null || item.getType() == Material.AIR) return false;
 
         int amt = item.getAmount();
         if (amt <= 1) {
@@ -223,16 +370,6 @@ public final class RewardCrateListener implements Listener {
         } else {
             item.setAmount(amt - 1);
         }
-    }
-
-    private boolean tryMarkUse(Player player) {
-        long now = System.currentTimeMillis();
-        UUID id = player.getUniqueId();
-        Long last = lastUseMs.get(id);
-        if (last != null && (now - last) < 250L) {
-            return false;
-        }
-        lastUseMs.put(id, now);
         return true;
     }
 }
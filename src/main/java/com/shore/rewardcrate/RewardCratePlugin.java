@@ -1,29 +1,43 @@
 package com.shore.rewardcrate;
 
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 public final class RewardCratePlugin extends JavaPlugin {
 
     private NamespacedKey crateKey;
     private RewardCrateService crateService;
     private RewardCrateListener listener;
+    private CommandDispatchQueue commandQueue;
+    private TimingWheel timingWheel;
+    private ClaimAuditLog auditLog;
+    private ClaimLedger ledger;
+    private CrateMetrics metrics;
+    private YamlConfiguration defaultConfig;
+    private CompiledConfigCache compiledCache;
+    private ConfigWatcher configWatcher;
+    // Shared by /rewardcrate reload and the file watcher thread.
+    private final AtomicBoolean reloading = new AtomicBoolean();
 
     @Override
     public void onEnable() {
@@ -31,10 +45,22 @@ public final class RewardCratePlugin extends JavaPlugin {
         saveDefaultConfig();
 
         this.crateKey = new NamespacedKey(this, "crate_id");
-        reloadCrateConfig();
+        this.metrics = new CrateMetrics(this);
+        this.commandQueue = new CommandDispatchQueue(this, metrics);
+        this.timingWheel = new TimingWheel(this);
+        this.auditLog = new ClaimAuditLog(this, new File(getDataFolder(), "claims").toPath());
+        this.ledger = new ClaimLedger(this, new File(getDataFolder(), "ledger.dat").toPath());
+        this.defaultConfig = CrateConfig.bundledDefaults();
+        this.compiledCache = new CompiledConfigCache(new File(getDataFolder(), "compiled-config.bin").toPath(),
+                CompiledConfigCache.compilerKey(getPluginMeta().getVersion(), bundledConfigBytes()));
+        loadCrateConfigNow();
 
         this.listener = new RewardCrateListener(crateService);
         Bukkit.getPluginManager().registerEvents(listener, this);
+        // Players who are already online (plugin reload) don't get a join event.
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            crateService.recoverClaims(player);
+        }
 
         getLogger().info("Enabled with " + crateService.getCrateItems().size() + " crate items and " + crateService.getRewards().size() + " rewards.");
     }
@@ -71,6 +97,10 @@ public final class RewardCratePlugin extends JavaPlugin {
         try {
             // PlugMan unload/reload safety: ensure no scheduled work survives disable.
             Bukkit.getScheduler().cancelTasks(this);
+            if (configWatcher != null) {
+                configWatcher.close();
+                configWatcher = null;
+            }
 
             if (crateService != null) {
                 for (Player player : Bukkit.getOnlinePlayers()) {
@@ -85,6 +115,25 @@ public final class RewardCratePlugin extends JavaPlugin {
                 }
                 crateService.shutdown();
             }
+            if (timingWheel != null) {
+                timingWheel.clear();
+            }
+            if (commandQueue != null) {
+                // Don't lose rewards that were claimed but not dispatched yet.
+                commandQueue.flush();
+            }
+            if (ledger != null) {
+                // The server saves every player after disabling plugins on shutdown; on a plugin reload
+                // the live inventories are what the next enable recovers against.
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    ledger.playerSaved(player.getUniqueId());
+                }
+                // After the flush, so the grants of the commands it just ran are recorded.
+                ledger.close();
+            }
+            if (auditLog != null) {
+                auditLog.close();
+            }
         } finally {
             HandlerList.unregisterAll(this);
             if (listener != null) {
@@ -92,6 +141,13 @@ public final class RewardCratePlugin extends JavaPlugin {
             }
             listener = null;
             crateService = null;
+            commandQueue = null;
+            auditLog = null;
+            ledger = null;
+            metrics = null;
+            defaultConfig = null;
+            compiledCache = null;
+            timingWheel = null;
             crateKey = null;
         }
     }
@@ -107,9 +163,56 @@ public final class RewardCratePlugin extends JavaPlugin {
                 sender.sendMessage("§cNo permission.");
                 return true;
             }
-            reloadConfig();
-            reloadCrateConfig();
-            sender.sendMessage("§aRewardCrate config reloaded.");
+            if (!reloading.compareAndSet(false, true)) {
+                sender.sendMessage("§cA reload is already running.");
+                return true;
+            }
+            reloadCrateConfigAsync(sender);
+            return true;
+        }
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            if (!sender.hasPermission("rewardcrate.admin")) {
+                sender.sendMessage("§cNo permission.");
+                return true;
+            }
+            for (String line : metrics.describe()) {
+                sender.sendMessage(line);
+            }
+            sender.sendMessage("§eQueued commands: §f" + commandQueue.size() + "§e, unfinished ledger entries: §f" + ledger.unfinishedCount());
+            return true;
+        }
+
+        if (args.length >= 1 && args[0].equalsIgnoreCase("open")) {
+            if (!(sender instanceof Player player)) {
+                sender.sendMessage("§cOnly players can open crates.");
+                return true;
+            }
+            if (!sender.hasPermission("rewardcrate.bulkopen")) {
+                sender.sendMessage("§cNo permission.");
+                return true;
+            }
+            if (!crateService.getGui().consumeItem()) {
+                sender.sendMessage("§cBulk opening is disabled while gui.consume-item is false.");
+                return true;
+            }
+
+            int amount = crateService.getBulkOpen().maxPerOpen();
+            if (args.length >= 2) {
+                try {
+                    amount = Integer.parseInt(args[1]);
+                } catch (NumberFormatException ignored) {
+                    sender.sendMessage("§cUsage: /rewardcrate open [amount]");
+                    return true;
+                }
+            }
+            if (amount < 1) amount = 1;
+
+            // Same debounce as right-clicking, so the command can't be spammed faster than clicks.
+            if (!crateService.tryMarkUse(player)) return true;
+            if (crateService.bulkOpen(player, EquipmentSlot.HAND, amount) == 0) {
+                sender.sendMessage("§cHold the presents you want to open in your main hand.");
+            }
             return true;
         }
 
@@ -155,6 +258,7 @@ public final class RewardCratePlugin extends JavaPlugin {
             ItemStack give = base.clone();
             give.setAmount(amount);
 
+            crateService.markHeldItemsChanged(target);
             var leftovers = target.getInventory().addItem(give);
             for (ItemStack rem : leftovers.values()) {
                 target.getWorld().dropItemNaturally(target.getLocation(), rem);
@@ -164,119 +268,244 @@ public final class RewardCratePlugin extends JavaPlugin {
             return true;
         }
 
-        sender.sendMessage("§cUsage: /rewardcrate reload | /rewardcrate list | /rewardcrate give <player> <crateId> [amount]");
+        sender.sendMessage("§cUsage: /rewardcrate open [amount] | /rewardcrate reload | /rewardcrate list | /rewardcrate stats | /rewardcrate give <player> <crateId> [amount]");
         return true;
     }
 
-    private void reloadCrateConfig() {
-        FileConfiguration cfg = getConfig();
-
-        GuiConfig gui = GuiConfig.fromConfig(cfg.getConfigurationSection("gui"));
-
-        ConfigurationSection tiersSection = cfg.getConfigurationSection("tiers");
-        boolean qualityGating = tiersSection == null || tiersSection.getBoolean("quality-gating", true);
-        boolean requireTierMatch = tiersSection != null && tiersSection.getBoolean("require-tier-match", false);
-        double coalChance = tiersSection == null ? 0.25D : tiersSection.getDouble("coal-chance", 0.25D);
-        if (coalChance < 0D) coalChance = 0D;
-        if (coalChance > 1D) coalChance = 1D;
-
-        Map<String, ItemStack> crateItems = new LinkedHashMap<>();
-        Map<String, Integer> crateItemTiers = new LinkedHashMap<>();
-        ConfigurationSection crateSection = cfg.getConfigurationSection("crate-items");
-        if (crateSection != null) {
-            for (String key : crateSection.getKeys(false)) {
-                ConfigurationSection itemSection = crateSection.getConfigurationSection(key);
-                if (itemSection == null) continue;
-                ItemStack stack = ItemFactory.fromSimpleItemSection(itemSection);
-                if (stack == null) continue;
-
-                // Per request: hard-code item6 to always be PAPER.
-                if (key.equalsIgnoreCase("item6") && stack.getType() != Material.PAPER) {
-                    stack.setType(Material.PAPER);
-                }
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        boolean admin = sender.hasPermission("rewardcrate.admin");
+        List<String> options = new ArrayList<>();
+        if (args.length == 1) {
+            if (sender.hasPermission("rewardcrate.bulkopen")) options.add("open");
+            if (admin) options.addAll(List.of("reload", "list", "stats", "give"));
+        } else if (admin && args[0].equalsIgnoreCase("give")) {
+            if (args.length == 2) {
+                for (Player player : Bukkit.getOnlinePlayers()) options.add(player.getName());
+            } else if (args.length == 3 && crateService != null) {
+                options.addAll(crateService.getCrateItems().keySet());
+            }
+        }
 
-                ItemFactory.tagString(stack, crateKey, key);
-                crateItems.put(key, stack);
+        String prefix = args.length == 0 ? "" : args[args.length - 1].toLowerCase(Locale.ROOT);
+        options.removeIf(option -> !option.toLowerCase(Locale.ROOT).startsWith(prefix));
+        return options;
+    }
 
-                int tier = itemSection.getInt("tier", 1);
-                if (tier < 1) tier = 1;
-                crateItemTiers.put(key, tier);
+    private void reloadCrateConfigAsync(CommandSender sender) {
+        sender.sendMessage("§7Reloading RewardCrate config...");
+
+        // File read, YAML parse and rule compilation run on a worker thread;
+        // only building ItemStacks and the final swap touch the main thread.
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            PhaseTimer timer = new PhaseTimer();
+            CrateConfig compiled;
+            try {
+                compiled = compileConfig(timer, null);
+            } catch (Exception e) {
+                // Not only I/O and YAML errors: a malformed node can make compilation itself throw.
+                // Clear the flag here, so a failed reload never blocks the next one.
+                reloading.set(false);
+                getLogger().log(Level.WARNING, "Reload failed; keeping the previous config.", e);
+                runOnMainThread(() -> sender.sendMessage("§cReload failed: " + e));
+                return;
             }
+
+            runOnMainThread(() -> {
+                reloading.set(false);
+                timer.mark("wait for main thread");
+                // A manual reload always rebuilds everything.
+                applyConfig(compiled, timer, false);
+                sender.sendMessage("§aRewardCrate config reloaded in " + timer.totalMillis() + " ms §7(" + timer + ")");
+            });
+        });
+    }
+
+    // Watcher thread. Only the sections whose content changed are recompiled and rebuilt.
+    private void reloadChangedSections() {
+        // A /rewardcrate reload is running: drop this change rather than block the watcher thread.
+        // That reload may have read the file before the save; the next save triggers another attempt.
+        if (!reloading.compareAndSet(false, true)) {
+            getLogger().info("config.yml changed during a reload; save it again to apply the change.");
+            return;
         }
 
-        List<RewardDefinition> rewards = new ArrayList<>();
-        if (cfg.isList("rewards")) {
-            for (Object raw : cfg.getList("rewards")) {
-                if (!(raw instanceof Map<?, ?> rawMap)) continue;
-                rewards.add(RewardDefinition.fromRawMap(rawMap));
-            }
+        boolean handedOff = false;
+        try {
+            RewardCrateService service = crateService;
+            if (service == null) return;
+            CrateConfig previous = service.getSnapshot().config();
+
+            PhaseTimer timer = new PhaseTimer();
+            CrateConfig compiled = compileConfig(timer, previous);
+
+            List<String> changed = new ArrayList<>();
+            if (compiled.gui() != previous.gui()) changed.add("gui");
+            if (compiled.crateItems() != previous.crateItems()) changed.add("crate items");
+            if (compiled.rewardTable() != previous.rewardTable()) changed.add("reward pools");
+
+            runOnMainThread(() -> {
+                reloading.set(false);
+                timer.mark("wait for main thread");
+                applyConfig(compiled, timer, true);
+                getLogger().info("config.yml changed; rebuilt " + (changed.isEmpty() ? "nothing" : String.join(", ", changed))
+                        + " in " + timer.totalMillis() + " ms (" + timer + ").");
+            });
+            handedOff = true;
+        } catch (IOException | InvalidConfigurationException e) {
+            // Often a half-written file; the next save triggers another attempt.
+            getLogger().warning("Ignoring config.yml change, it could not be loaded: " + e.getMessage());
+        } catch (RuntimeException e) {
+            getLogger().log(Level.WARNING, "Ignoring config.yml change, it could not be compiled.", e);
+        } finally {
+            // The main-thread task clears the flag itself; every other way out clears it here.
+            if (!handedOff) reloading.set(false);
         }
+    }
 
-        applyHardcodedLootboxRewards(rewards);
+    private void runOnMainThread(Runnable action) {
+        // The plugin may have been disabled while the worker was busy.
+        if (!isEnabled()) return;
+        Bukkit.getScheduler().runTask(this, action);
+    }
 
-        int inferredMaxTier = 1;
-        for (int tier : crateItemTiers.values()) {
-            if (tier > inferredMaxTier) inferredMaxTier = tier;
+    private void loadCrateConfigNow() {
+        PhaseTimer timer = new PhaseTimer();
+        CrateConfig compiled;
+        try {
+            compiled = compileConfig(timer, null);
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().log(Level.SEVERE, "Could not load config.yml; using the defaults bundled in the jar.", e);
+            compiled = CrateConfig.compile(defaultConfig);
+        } catch (RuntimeException e) {
+            getLogger().log(Level.SEVERE, "Could not compile config.yml; using the defaults bundled in the jar.", e);
+            compiled = CrateConfig.compile(defaultConfig);
         }
-        int maxTier = tiersSection == null ? inferredMaxTier : tiersSection.getInt("max-tier", inferredMaxTier);
-        if (maxTier < 1) maxTier = 1;
+        applyConfig(compiled, timer, false);
+        getLogger().info("Loaded config in " + timer.totalMillis() + " ms (" + timer + ").");
+    }
+
+    // Touches no server state. previous: unchanged sections are reused from it; otherwise the binary cache is tried first.
+    private CrateConfig compileConfig(PhaseTimer timer, CrateConfig previous) throws IOException, InvalidConfigurationException {
+        byte[] bytes = Files.readAllBytes(new File(getDataFolder(), "config.yml").toPath());
+        timer.mark("read");
 
-        this.crateService = new RewardCrateService(this, crateKey, gui, crateItems, crateItemTiers, rewards, maxTier, qualityGating, requireTierMatch, coalChance);
-        if (listener != null) {
-            listener.setService(crateService);
+        byte[] hash = CompiledConfigCache.hash(bytes);
+        if (previous == null) {
+            CrateConfig cached = readCompiledCache(hash);
+            timer.mark("cache");
+            if (cached != null) return cached;
         }
+
+        String text = new String(bytes, StandardCharsets.UTF_8);
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        // Same fallback as getConfig(): keys missing from the file come from the bundled config.yml.
+        yaml.setDefaults(defaultConfig);
+        yaml.loadFromString(text);
+        timer.mark("parse");
+
+        CrateConfig compiled = CrateConfig.compile(yaml, previous);
+        timer.mark("compile");
+
+        writeCompiledCache(hash, compiled);
+        timer.mark("write cache");
+        return compiled;
     }
 
-    private static void applyHardcodedLootboxRewards(List<RewardDefinition> rewards) {
-        // Per request: hard-code these rewards into the jar so they always exist.
-        // They should NOT give the barrel item; they should only run the command.
-
-        // Note: many lootbox plugins treat the lootbox id as case-sensitive.
-        String vortexCmd = "shorelootboxgive {player} Vortex 1";
-        String celestialCmd = "shorelootboxgive {player} Celestial 1";
-
-        rewards.removeIf(r -> {
-            if (r == null) return false;
-            if (r.material() != Material.BARREL) return false;
-            if (r.commands() == null) return false;
-            for (String cmd : r.commands()) {
-                if (cmd == null) continue;
-                String c = cmd.trim();
-                // Remove any previous hard-coded variants (case differences, etc.) before re-adding.
-                if (c.equalsIgnoreCase(vortexCmd) || c.equalsIgnoreCase(celestialCmd)) return true;
-                if (c.equalsIgnoreCase("shorelootboxgive {player} vortex 1") || c.equalsIgnoreCase("shorelootboxgive {player} celestial 1")) return true;
-            }
-            return false;
-        });
+    private CrateConfig readCompiledCache(byte[] hash) {
+        try {
+            return compiledCache.read(hash);
+        } catch (IOException | RuntimeException e) {
+            // A corrupt file can also fail with e.g. NegativeArraySizeException; it is only a cache.
+            getLogger().warning("Ignoring unreadable compiled-config.bin: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCompiledCache(byte[] hash, CrateConfig compiled) {
+        try {
+            compiledCache.write(hash, compiled);
+        } catch (IOException e) {
+            // Only costs startup time next time; the config itself is fine.
+            getLogger().warning("Could not write compiled-config.bin: " + e.getMessage());
+        }
+    }
 
-        rewards.add(new RewardDefinition(
-                Material.BARREL,
-                1,
-                "&#00FF46&lVORTEX LOOTBOX",
-                List.of(),
-                List.of(),
-                List.of(vortexCmd),
-                false,
-                List.of(),
-                5,
-                null
-        ));
-
-        rewards.add(new RewardDefinition(
-                Material.BARREL,
-                1,
-                "&#00C7FF&lC&#00C7FF&lE&#00C7FF&lL&#40D2BF&lE&#80DD80&lS&#BFE840&lT&#FFF300&lI&#FFF300&lA&#FFF300&lL &#00C7FF&lL&#00C7FF&lO&#00C7FF&lO&#55D6AA&lT&#AAE455&lB&#FFF300&lO&#FFF300&lX",
-                List.of(),
-                List.of(),
-                List.of(celestialCmd),
-                false,
-                List.of(),
-                5,
-                null
-        ));
+    // incremental: reuse the parts of the current snapshot whose source did not change.
+    private void applyConfig(CrateConfig compiled, PhaseTimer timer, boolean incremental) {
+        CrateEvents.Reload event = new CrateEvents.Reload();
+        event.begin();
+
+        commandQueue.configure(compiled.dispatch());
+        auditLog.configure(compiled.audit());
+        // Before the service exists, so the log is replayed before anyone is recovered.
+        ledger.configure(compiled.ledger());
+        metrics.configure(compiled.metrics());
+        RewardRandom random = new RewardRandom(compiled.randomMode(), compiled.randomSeed());
+        CrateSnapshot previous = incremental && crateService != null ? crateService.getSnapshot() : null;
+        CrateSnapshot snapshot = CrateSnapshot.build(crateKey, compiled, previous);
+        timer.mark("build");
+
+        if (crateService == null) {
+            this.crateService = new RewardCrateService(this, snapshot, random, commandQueue, timingWheel, auditLog, ledger, metrics);
+        } else {
+            // Keep sessions, timers and queued commands; only the config-derived data is replaced.
+            crateService.applySnapshot(snapshot, random);
+        }
+        timer.mark("swap");
+
+        updateConfigWatcher(compiled.watchFile());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.incremental = incremental;
+            event.crateItems = compiled.crateItems().size();
+            event.rewards = compiled.rewardTable().rewards().size();
+            event.phases = timer.toString();
+            event.commit();
+        }
+    }
+
+    private void updateConfigWatcher(boolean enabled) {
+        if (enabled == (configWatcher != null)) return;
+
+        if (!enabled) {
+            configWatcher.close();
+            configWatcher = null;
+            getLogger().info("Stopped watching config.yml for changes.");
+            return;
+        }
+
+        try {
+            configWatcher = ConfigWatcher.start(new File(getDataFolder(), "config.yml").toPath(), getLogger(), this::reloadChangedSections);
+            getLogger().info("Watching config.yml for changes.");
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Could not watch config.yml for changes.", e);
+        }
+    }
+
+    private byte[] bundledConfigBytes() {
+        try (InputStream in = getResource("config.yml")) {
+            return in == null ? new byte[0] : in.readAllBytes();
+        } catch (IOException e) {
+            return new byte[0];
+        }
     }
 
     public NamespacedKey getCrateKey() {
         return crateKey;
     }
+
+    public RewardCrateService getCrateService() {
+        return crateService;
+    }
+
+    CommandDispatchQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    ClaimLedger getLedger() {
+        return ledger;
+    }
 }
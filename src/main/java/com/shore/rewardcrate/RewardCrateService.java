@@ -1,209 +1,202 @@
 package com.shore.rewardcrate;
 
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
-import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
-import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.inventory.PlayerInventory;
 
-import java.security.SecureRandom;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.random.RandomGenerator;
 
 public final class RewardCrateService {
 
-    private static final Pattern STRIP_HEX_AMP = Pattern.compile("&#[A-Fa-f0-9]{6}");
-    private static final Pattern STRIP_LEGACY_AMP = Pattern.compile("&[0-9A-FK-ORa-fk-or]");
-
     private final RewardCratePlugin plugin;
-    private final NamespacedKey crateKey;
-    private final GuiConfig gui;
-    private final Map<String, ItemStack> crateItems;
-    private final Map<String, Integer> crateItemTiers;
-    private final List<RewardDefinition> rewards;
-    private final int maxTier;
-    private final boolean qualityGating;
-    private final boolean requireTierMatch;
-    private final double coalChance;
-    private final Random random = new SecureRandom();
-
-    private final Map<UUID, Boolean> claimedThisOpen = new HashMap<>();
-    private final Map<UUID, BukkitTask> closeTasks = new HashMap<>();
-    private final Map<UUID, String> openCrateIds = new HashMap<>();
-    private final Map<UUID, Integer> openTiers = new HashMap<>();
+    private final CommandDispatchQueue commandQueue;
+    private final TimingWheel timingWheel;
+    private final ClaimAuditLog auditLog;
+    private final ClaimLedger ledger;
+    private final CrateMetrics metrics;
+    private final SessionRegistry sessions = new SessionRegistry();
+    // Players with a crate GUI or bulk open summary open; at most a handful at any time.
+    private final Set<UUID> guiViewers = new HashSet<>();
+
+    private volatile CrateSnapshot snapshot;
+    private RewardRandom random;
 
     public RewardCrateService(
             RewardCratePlugin plugin,
-            NamespacedKey crateKey,
-            GuiConfig gui,
-            Map<String, ItemStack> crateItems,
-            Map<String, Integer> crateItemTiers,
-            List<RewardDefinition> rewards,
-            int maxTier,
-            boolean qualityGating,
-            boolean requireTierMatch,
-            double coalChance
+            CrateSnapshot snapshot,
+            RewardRandom random,
+            CommandDispatchQueue commandQueue,
+            TimingWheel timingWheel,
+            ClaimAuditLog auditLog,
+            ClaimLedger ledger,
+            CrateMetrics metrics
     ) {
         this.plugin = plugin;
-        this.crateKey = crateKey;
-        this.gui = gui;
-        this.crateItems = Map.copyOf(crateItems);
-        this.crateItemTiers = Map.copyOf(crateItemTiers);
-        this.rewards = List.copyOf(rewards);
-        this.maxTier = Math.max(1, maxTier);
-        this.qualityGating = qualityGating;
-        this.requireTierMatch = requireTierMatch;
-        this.coalChance = Math.max(0D, Math.min(1D, coalChance));
+        this.snapshot = snapshot;
+        this.random = random;
+        this.commandQueue = commandQueue;
+        this.timingWheel = timingWheel;
+        this.auditLog = auditLog;
+        this.ledger = ledger;
+        this.metrics = metrics;
+    }
+
+    // Crates that are open right now finish against the snapshot they opened with.
+    public void applySnapshot(CrateSnapshot next, RewardRandom nextRandom) {
+        this.snapshot = next;
+        // What counts as a crate may have changed.
+        for (CrateSession session : sessions.all()) {
+            session.markHeldDirty();
+        }
+        // Keep the running (possibly seeded) sequences unless the random settings actually changed.
+        if (!random.hasSameSettings(nextRandom)) {
+            this.random = nextRandom;
+        }
+    }
+
+    public CrateSnapshot getSnapshot() {
+        return snapshot;
     }
 
     public RewardCratePlugin getPlugin() {
         return plugin;
     }
 
+    public CrateMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
     public GuiConfig getGui() {
-        return gui;
+        return snapshot.gui();
     }
 
     public Map<String, ItemStack> getCrateItems() {
-        return crateItems;
+        return snapshot.crateItems();
     }
 
     public List<RewardDefinition> getRewards() {
-        return rewards;
+        return snapshot.rewardTable().rewards();
     }
 
-    public boolean isCrateItem(ItemStack stack) {
-        if (stack == null || stack.getType() == Material.AIR) return false;
-
-        String tagged = ItemFactory.readTagString(stack, crateKey);
-        if (tagged != null && crateItems.containsKey(tagged)) {
-            return true;
-        }
-
-        // Fallback: match by material + visible display name (so items given by other plugins still work)
-        // Comparing Components directly is brittle (different serializers can produce structurally different Components).
-        String incomingName = normalizeName(plainName(stack));
-        if (incomingName == null || incomingName.isBlank()) return false;
-
-        for (ItemStack configured : crateItems.values()) {
-            if (configured.getType() != stack.getType()) continue;
-            String configuredName = normalizeName(plainName(configured));
-            if (configuredName == null || configuredName.isBlank()) continue;
-            if (configuredName.equalsIgnoreCase(incomingName)) return true;
-        }
+    public BulkOpen.Settings getBulkOpen() {
+        return snapshot.config().bulkOpen();
+    }
 
-        return false;
+    public boolean isCrateItem(ItemStack stack) {
+        return matchCrateId(stack) != null;
     }
 
     public String matchCrateId(ItemStack stack) {
-        if (stack == null || stack.getType() == Material.AIR) return null;
-        String tagged = ItemFactory.readTagString(stack, crateKey);
-        if (tagged != null && crateItems.containsKey(tagged)) return tagged;
-
-        String incomingName = normalizeName(plainName(stack));
-        if (incomingName == null || incomingName.isBlank()) return null;
-
-        for (Map.Entry<String, ItemStack> entry : crateItems.entrySet()) {
-            ItemStack configured = entry.getValue();
-            if (configured.getType() != stack.getType()) continue;
-            String configuredName = normalizeName(plainName(configured));
-            if (configuredName == null || configuredName.isBlank()) continue;
-            if (configuredName.equalsIgnoreCase(incomingName)) return entry.getKey();
-        }
-
-        return null;
+        return snapshot.matchCrateId(stack, metrics);
     }
 
     public int tierForCrateId(String crateId) {
-        if (crateId == null) return 1;
-        return Math.max(1, crateItemTiers.getOrDefault(crateId, 1));
+        return snapshot.tierForCrateId(crateId);
     }
 
-    private static String plainName(ItemStack stack) {
-        var meta = stack.getItemMeta();
-        if (meta == null) return null;
-        Component name = meta.displayName();
-        if (name == null) return null;
-        return PlainTextComponentSerializer.plainText().serialize(name).trim();
+    // Cached per player for the rest of the tick; recomputed next tick or after an event that may have changed
+    // the hands. A cached "yes" is always re-checked, so a missed change never blocks breaking.
+    public boolean isHoldingCrate(Player player) {
+        CrateSession session = sessions.get(player.getUniqueId());
+        int tick = Bukkit.getCurrentTick();
+        if (session.heldValidAt(tick) && !session.holdingCrate()) return false;
+        PlayerInventory inventory = player.getInventory();
+        boolean holding = isCrateItem(inventory.getItemInMainHand()) || isCrateItem(inventory.getItemInOffHand());
+        session.holdingCrate(holding, tick);
+        return holding;
     }
 
-    private static String normalizeName(String s) {
-        if (s == null) return null;
-        String out = STRIP_HEX_AMP.matcher(s).replaceAll("");
-        out = STRIP_LEGACY_AMP.matcher(out).replaceAll("");
-        out = out.replaceAll("\\s+", " ").trim();
-        return out;
+    public void markHeldItemsChanged(Player player) {
+        CrateSession session = sessions.find(player.getUniqueId());
+        // Sessions start dirty, so there is nothing to do for players without one.
+        if (session != null) session.markHeldDirty();
     }
 
-    public void openCrate(Player player, String crateId) {
-        cancelDelayedClose(player);
-        openCrateIds.put(player.getUniqueId(), crateId);
-        openTiers.put(player.getUniqueId(), tierForCrateId(crateId));
-        RewardCrateHolder holder = new RewardCrateHolder(player.getUniqueId());
-        Inventory inv = Bukkit.createInventory(holder, InventoryType.BARREL, TextUtil.colorize(gui.title()));
-        holder.setInventory(inv);
+    public void openCrate(Player player, String crateId, boolean consumed) {
+        CrateEvents.Open event = new CrateEvents.Open();
+        event.begin();
 
-        claimedThisOpen.put(player.getUniqueId(), false);
+        CrateSnapshot current = snapshot;
+        CrateSession session = sessions.get(player.getUniqueId());
+        abandonUnclaimed(session);
+        session.begin(current, crateId, current.tierForCrateId(crateId));
+        session.ledgerId(ledger.open(player.getUniqueId(), crateId, consumed));
+        metrics.opens.increment();
 
-        ItemStack filler = new ItemStack(gui.fillerMaterial(), 1);
-        var fillerMeta = filler.getItemMeta();
-        if (fillerMeta != null) {
-            fillerMeta.displayName(TextUtil.colorize(gui.fillerName()));
-            filler.setItemMeta(fillerMeta);
+        GuiTemplate template = current.guiTemplate();
+        Inventory inv = pooledInventory(player, session, template);
+        inv.setContents(template.contents());
+        player.openInventory(inv);
+        // After opening: replacing another crate GUI fires its close event, which clears the entry.
+        guiViewers.add(player.getUniqueId());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.player = player.getName();
+            event.crateId = crateId;
+            event.tier = session.tier();
+            event.consumed = consumed;
+            event.commit();
         }
+    }
 
-        for (int i = 0; i < inv.getSize(); i++) {
-            inv.setItem(i, filler);
+    private Inventory pooledInventory(Player player, CrateSession session, GuiTemplate template) {
+        // Reuse the player's previous crate inventory unless someone is still looking at it.
+        RewardCrateHolder holder = session.pooledHolder(template);
+        if (holder != null && holder.getInventory().getViewers().isEmpty()) {
+            return holder.getInventory();
         }
 
-        ItemStack claim = new ItemStack(gui.claimMaterial(), 1);
-        var claimMeta = claim.getItemMeta();
-        if (claimMeta != null) {
-            claimMeta.displayName(TextUtil.colorize(gui.claimName()));
-            if (gui.claimLore() != null && !gui.claimLore().isEmpty()) {
-                List<Component> lore = new ArrayList<>();
-                for (String line : gui.claimLore()) {
-                    lore.add(TextUtil.colorize(line));
-                }
-                claimMeta.lore(lore);
-            }
-            claim.setItemMeta(claimMeta);
-        }
+        holder = new RewardCrateHolder(player.getUniqueId());
+        Inventory inv = Bukkit.createInventory(holder, GuiTemplate.TYPE, template.title());
+        holder.setInventory(inv);
+        session.pooledHolder(holder, template);
+        return inv;
+    }
 
-        for (int slot : gui.claimSlots()) {
-            if (slot >= 0 && slot < inv.getSize()) {
-                inv.setItem(slot, claim);
-            }
-        }
+    public SessionRegistry getSessions() {
+        return sessions;
+    }
 
-        player.openInventory(inv);
+    // Prevent double-trigger (Interact + Place) from consuming twice.
+    public boolean tryMarkUse(Player player) {
+        return sessions.get(player.getUniqueId()).tryMarkUse(System.currentTimeMillis(), 250L);
+    }
+
+    public void releasePlayer(Player player) {
+        CrateSession session = sessions.find(player.getUniqueId());
+        if (session != null) abandonUnclaimed(session);
+        // The server saves the player's data right after the quit event.
+        ledger.playerSaved(player.getUniqueId());
+        sessions.remove(player.getUniqueId());
+        guiViewers.remove(player.getUniqueId());
+        random.forget(player.getUniqueId());
     }
 
     public void scheduleDelayedClose(Player player, long delayTicks) {
-        cancelDelayedClose(player);
-        BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            if (!player.isOnline()) {
-                closeTasks.remove(player.getUniqueId());
-                return;
-            }
+        CrateSession session = sessions.get(player.getUniqueId());
+        session.scheduleClose(timingWheel.schedule(delayTicks, () -> {
+            if (!player.isOnline()) return;
 
-            Inventory top = player.getOpenInventory().getTopInventory();
-            if (isOurGui(player, top)) {
+            if (hasCrateGuiOpen(player)) {
                 player.closeInventory();
             }
-            closeTasks.remove(player.getUniqueId());
-        }, delayTicks);
-        closeTasks.put(player.getUniqueId(), task);
+        }));
     }
 
     public void cancelDelayedClose(Player player) {
-        BukkitTask task = closeTasks.remove(player.getUniqueId());
-        if (task != null) task.cancel();
+        CrateSession session = sessions.find(player.getUniqueId());
+        if (session != null) session.cancelClose();
     }
 
     public boolean isOurGui(Player player, Inventory top) {
@@ -212,29 +205,92 @@ public final class RewardCrateService {
         return holder.getPlayerId().equals(player.getUniqueId());
     }
 
+    // Players outside the presence set are answered without resolving their open inventory (cheap for block breaking).
+    public boolean hasCrateGuiOpen(Player player) {
+        if (!guiViewers.contains(player.getUniqueId())) return false;
+        return isOurGui(player, player.getOpenInventory().getTopInventory());
+    }
+
+    public boolean isSummaryGui(Inventory top) {
+        return top != null && top.getHolder() instanceof RewardCrateHolder holder && holder.isSummary();
+    }
+
+    public boolean isClaimSlot(Player player, int rawSlot) {
+        return guiFor(player).claimSlots().contains(rawSlot);
+    }
+
+    private GuiConfig guiFor(Player player) {
+        CrateSession session = sessions.find(player.getUniqueId());
+        CrateSnapshot opened = session == null ? null : session.snapshot();
+        return (opened != null ? opened : snapshot).gui();
+    }
+
     public boolean canClaim(Player player) {
-        return !claimedThisOpen.getOrDefault(player.getUniqueId(), false);
+        CrateSession session = sessions.find(player.getUniqueId());
+        return session == null || !session.isClaimed();
     }
 
     public void markClaimed(Player player) {
-        claimedThisOpen.put(player.getUniqueId(), true);
+        sessions.get(player.getUniqueId()).markClaimed();
     }
 
     public void clearSession(Player player) {
-        cancelDelayedClose(player);
-        claimedThisOpen.remove(player.getUniqueId());
-        openCrateIds.remove(player.getUniqueId());
-        openTiers.remove(player.getUniqueId());
+        guiViewers.remove(player.getUniqueId());
+        CrateSession session = sessions.find(player.getUniqueId());
+        if (session == null) return;
+        abandonUnclaimed(session);
+        session.end();
     }
 
-    public void shutdown() {
-        for (BukkitTask task : closeTasks.values()) {
-            if (task != null) task.cancel();
+    // Closing the GUI without claiming forfeits the crate (as it always did); the ledger just records it.
+    private void abandonUnclaimed(CrateSession session) {
+        if (session.ledgerId() == 0L) return;
+        ledger.abandoned(session.ledgerId());
+        session.ledgerId(0L);
+    }
+
+    // Finishes crates a crash or restart interrupted. Entries newer than the player's last save were rolled back
+    // along with the inventory and are only dropped.
+    public void recoverClaims(Player player) {
+        int rolledBack = 0;
+        for (ClaimLedger.Entry entry : ledger.takeRecoverable(player.getUniqueId())) {
+            if (!entry.isPlayerSaved()) {
+                ledger.abandoned(entry.id());
+                rolledBack++;
+                continue;
+            }
+            if (entry.isClaimed()) {
+                deliver(player.getUniqueId(), entry.id(), entry.item(), entry.commands());
+                player.sendMessage("§aYou received the reward of a crate claim that was interrupted.");
+                continue;
+            }
+            if (!entry.consumed()) {
+                ledger.abandoned(entry.id());
+                continue;
+            }
+
+            ItemStack crate = snapshot.crateItems().get(entry.crateId());
+            if (crate == null) {
+                plugin.getLogger().warning("Cannot refund crate '" + entry.crateId() + "' to " + player.getName()
+                        + ": it no longer exists in config.yml. It will be retried after the next restart.");
+                continue;
+            }
+            ItemStack refund = crate.clone();
+            refund.setAmount(1);
+            giveOrDrop(player, refund);
+            ledger.refunded(entry.id());
+            player.sendMessage("§aA crate you opened before a restart was given back to you.");
+        }
+        if (rolledBack > 0) {
+            plugin.getLogger().info("Dropped " + rolledBack + " ledger entr" + (rolledBack == 1 ? "y" : "ies") + " of " + player.getName()
+                    + " opened after their last save; the crash rolled their inventory back to before them.");
         }
-        closeTasks.clear();
-        claimedThisOpen.clear();
-        openCrateIds.clear();
-        openTiers.clear();
+    }
+
+    public void shutdown() {
+        guiViewers.clear();
+        sessions.clear();
+        random.clear();
     }
 
     public void giveRandomReward(Player player) {
@@ -243,116 +299,235 @@ public final class RewardCrateService {
     }
 
     public ItemStack claimRandomReward(Player player) {
-        if (rewards.isEmpty()) {
+        CrateEvents.Claim event = new CrateEvents.Claim();
+        event.begin();
+
+        CrateSession session = sessions.find(player.getUniqueId());
+        CrateSnapshot opened = session == null || session.snapshot() == null ? snapshot : session.snapshot();
+        String crateId = session == null ? null : session.crateId();
+        int tier = session == null ? 1 : Math.max(1, session.tier());
+        int rewardIndex = opened.rewardTable().roll(tier, random.forPlayer(player.getUniqueId()));
+        try {
+            return claim(player, session, opened, crateId, tier, rewardIndex);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.player = player.getName();
+                event.crateId = crateId;
+                event.tier = tier;
+                event.rewardIndex = rewardIndex;
+                event.coal = rewardIndex == RewardTable.COAL;
+                event.commit();
+            }
+        }
+    }
+
+    private ItemStack claim(Player player, CrateSession session, CrateSnapshot opened, String crateId, int tier, int rewardIndex) {
+        if (rewardIndex == RewardTable.NO_REWARD) {
             player.sendMessage(Component.text("No rewards configured."));
             return null;
         }
 
-        int tier = Math.max(1, openTiers.getOrDefault(player.getUniqueId(), 1));
-        int cappedTier = Math.min(tier, maxTier);
-
-        // 25% (configurable) chance to get coal from any present.
-        if (random.nextDouble() < coalChance) {
-            ItemStack coal = new ItemStack(Material.COAL, 1);
-            Map<Integer, ItemStack> remaining = player.getInventory().addItem(coal);
-            for (ItemStack rem : remaining.values()) {
-                player.getWorld().dropItemNaturally(player.getLocation(), rem);
+        metrics.claims.increment();
+        if (rewardIndex == RewardTable.COAL) metrics.coalRolls.increment();
+
+        auditLog.record(player.getUniqueId(), player.getName(), crateId, tier, rewardIndex, rewardIndex == RewardTable.COAL);
+
+        RewardTable rewardTable = opened.rewardTable();
+        ItemStack give;
+        List<String> commands = new ArrayList<>();
+        ItemStack display;
+        if (rewardIndex == RewardTable.COAL) {
+            give = new ItemStack(Material.COAL, 1);
+            display = give.clone();
+        } else {
+            RewardDefinition reward = rewardTable.reward(rewardIndex);
+            if (reward.commands() != null) {
+                for (String cmd : reward.commands()) {
+                    if (cmd == null || cmd.isBlank()) continue;
+                    commands.add(cmd.replace("{player}", player.getName()));
+                }
             }
-            return coal;
+            // Physical item only when configured
+            give = opened.giveItem(rewardIndex);
+            // Always return a display item so the GUI can show what was won.
+            display = opened.displayItem(rewardIndex);
         }
 
-        List<RewardDefinition> eligible = eligibleRewardsForTier(cappedTier);
-        if (eligible.isEmpty()) eligible = rewards;
-        RewardDefinition reward = eligible.get(random.nextInt(eligible.size()));
-
-        // Run commands first (optional)
-        if (reward.commands() != null) {
-            for (String cmd : reward.commands()) {
-                System.out.println(cmd);
-                if (cmd == null || cmd.isBlank()) continue;
-                System.out.println("retarded");
-                String finalCmd = cmd.replace("{player}", player.getName());
-                Bukkit.dispatchCommand(Bukkit.getConsoleSender(), finalCmd);
-            }
+        // The reward is handed out once the claim is safely in the ledger (a few ms later, off the main thread).
+        long ledgerId = session == null ? 0L : session.ledgerId();
+        if (session != null) session.ledgerId(0L);
+        UUID playerId = player.getUniqueId();
+        if (!ledger.claim(ledgerId, rewardIndex, commands, give, () -> deliver(playerId, ledgerId, give, commands))) {
+            deliver(playerId, ledgerId, give, commands);
         }
+        return display;
+    }
 
-        // Give physical item only when configured
-        if (reward.giveItem()) {
-            ItemStack stack = ItemFactory.fromRewardGive(reward);
-            Map<Integer, ItemStack> remaining = player.getInventory().addItem(stack);
-            for (ItemStack rem : remaining.values()) {
-                player.getWorld().dropItemNaturally(player.getLocation(), rem);
-            }
+    // If the player is offline the entry stays in the ledger and is finished when they join.
+    private void deliver(UUID playerId, long ledgerId, ItemStack item, List<String> commands) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null || !player.isOnline()) {
+            ledger.release(ledgerId);
+            return;
         }
 
-        // Always return a display item so the GUI can show what was won.
-        return ItemFactory.fromRewardDisplay(reward);
+        if (item != null) {
+            giveOrDrop(player, item);
+            ledger.itemGiven(ledgerId);
+        }
+        if (commands.isEmpty()) {
+            ledger.granted(ledgerId);
+            return;
+        }
+        // Queued commands run over the next ticks under the dispatch budget.
+        for (int i = 0; i < commands.size(); i++) {
+            Runnable afterDispatch = i == commands.size() - 1 ? () -> ledger.granted(ledgerId) : null;
+            commandQueue.enqueue(commands.get(i), afterDispatch);
+        }
     }
 
-    private List<RewardDefinition> eligibleRewardsForTier(int tier) {
-        if (rewards.isEmpty()) return List.of();
-
-        List<RewardDefinition> allowedByRules = new ArrayList<>();
-        for (RewardDefinition r : rewards) {
-            if (!hasAnyTierRules(r)) continue;
-            if (isAllowedByExplicitTierRules(r, tier)) {
-                allowedByRules.add(r);
+    // Rolls every crate now, hands out the merged items with one insert and queues all commands together.
+    // Each crate still gets its own ledger entry and audit line. Callers apply the tryMarkUse debounce.
+    public int bulkOpen(Player player, EquipmentSlot hand, int requested) {
+        CrateSnapshot current = snapshot;
+        PlayerInventory inventory = player.getInventory();
+        ItemStack stack = hand == EquipmentSlot.OFF_HAND ? inventory.getItemInOffHand() : inventory.getItemInMainHand();
+        String crateId = current.matchCrateId(stack, metrics);
+        if (crateId == null) return 0;
+        // Without consumption nothing limits how often a crate can be opened, and a bulk open would
+        // multiply that by the stack size.
+        if (!current.gui().consumeItem()) return 0;
+        int count = Math.min(Math.min(requested, current.config().bulkOpen().maxPerOpen()), stack.getAmount());
+        if (count < 1) return 0;
+
+        CrateEvents.BulkOpen event = new CrateEvents.BulkOpen();
+        event.begin();
+
+        UUID playerId = player.getUniqueId();
+        int tier = current.tierForCrateId(crateId);
+        RewardTable rewardTable = current.rewardTable();
+        RandomGenerator rng = random.forPlayer(playerId);
+        int[] rolls = new int[count];
+        for (int i = 0; i < count; i++) {
+            rolls[i] = rewardTable.roll(tier, rng);
+            // Nothing can be won at this tier; keep the crates.
+            if (rolls[i] == RewardTable.NO_REWARD) {
+                player.sendMessage(Component.text("No rewards configured."));
+                return 0;
             }
         }
 
-        // Strict mode: only rewards with explicit tier rules are eligible.
-        if (requireTierMatch) {
-            return allowedByRules;
+        markHeldItemsChanged(player);
+        if (count >= stack.getAmount()) {
+            if (hand == EquipmentSlot.OFF_HAND) inventory.setItemInOffHand(new ItemStack(Material.AIR));
+            else inventory.setItemInMainHand(new ItemStack(Material.AIR));
+        } else {
+            stack.setAmount(stack.getAmount() - count);
         }
 
-        // If any rewards define explicit rules, still allow the others unless quality-gating is enabled.
-        // We apply quality-gating only to rewards without explicit rules.
-        if (!qualityGating) {
-            // If no explicit rules, everything is eligible
-            if (allowedByRules.size() == rewards.size()) return allowedByRules;
-
-            List<RewardDefinition> out = new ArrayList<>();
-            for (RewardDefinition r : rewards) {
-                if (hasAnyTierRules(r)) {
-                    if (isAllowedByExplicitTierRules(r, tier)) out.add(r);
-                } else {
-                    out.add(r);
+        // A crate GUI left open unclaimed is forfeited, as closing it would.
+        CrateSession session = sessions.get(playerId);
+        abandonUnclaimed(session);
+        session.end();
+
+        metrics.opens.add(count);
+        metrics.claims.add(count);
+        long[] ledgerIds = new long[count];
+        ItemStack[] items = new ItemStack[count];
+        List<List<String>> commands = new ArrayList<>(count);
+        Map<Integer, Integer> won = new LinkedHashMap<>();
+        int coal = 0;
+        for (int i = 0; i < count; i++) {
+            int rewardIndex = rolls[i];
+            won.merge(rewardIndex, 1, Integer::sum);
+            auditLog.record(playerId, player.getName(), crateId, tier, rewardIndex, rewardIndex == RewardTable.COAL);
+
+            List<String> rewardCommands = new ArrayList<>();
+            if (rewardIndex == RewardTable.COAL) {
+                coal++;
+                items[i] = new ItemStack(Material.COAL, 1);
+            } else {
+                RewardDefinition reward = rewardTable.reward(rewardIndex);
+                if (reward.commands() != null) {
+                    for (String cmd : reward.commands()) {
+                        if (cmd == null || cmd.isBlank()) continue;
+                        rewardCommands.add(cmd.replace("{player}", player.getName()));
+                    }
                 }
+                items[i] = current.giveItem(rewardIndex);
             }
-            return out;
+            commands.add(rewardCommands);
+            ledgerIds[i] = ledger.open(playerId, crateId, true);
         }
-
-        int n = rewards.size();
-        double threshold = maxTier <= 0 ? 0D : (Math.max(1, Math.min(tier, maxTier)) - 1) / (double) maxTier;
-        if (n == 1) threshold = 0D;
-
-        List<RewardDefinition> out = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            RewardDefinition r = rewards.get(i);
-            if (hasAnyTierRules(r)) {
-                if (isAllowedByExplicitTierRules(r, tier)) out.add(r);
-                continue;
-            }
-
-            double frac = (n <= 1) ? 1D : (i / (double) (n - 1));
-            if (frac >= threshold) {
-                out.add(r);
+        metrics.coalRolls.add(coal);
+
+        // Hand everything out together once the last claim is durable in the ledger.
+        int[] pending = {count};
+        Runnable onDurable = () -> {
+            if (--pending[0] == 0) deliverBulk(playerId, ledgerIds, items, commands);
+        };
+        for (int i = 0; i < count; i++) {
+            if (!ledger.claim(ledgerIds[i], rolls[i], commands.get(i), items[i], onDurable)) {
+                onDurable.run();
             }
         }
 
-        return out;
+        player.openInventory(BulkOpen.summaryInventory(playerId, current, count, won));
+        guiViewers.add(playerId);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.player = player.getName();
+            event.crateId = crateId;
+            event.tier = tier;
+            event.count = count;
+            event.coal = coal;
+            event.commit();
+        }
+        return count;
     }
 
-    private static boolean hasAnyTierRules(RewardDefinition r) {
-        return (r.tiers() != null && !r.tiers().isEmpty()) || r.minTier() != null || r.maxTier() != null;
+    private void deliverBulk(UUID playerId, long[] ledgerIds, ItemStack[] items, List<List<String>> commands) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null || !player.isOnline()) {
+            for (long ledgerId : ledgerIds) ledger.release(ledgerId);
+            return;
+        }
+
+        List<ItemStack> gives = new ArrayList<>(items.length);
+        for (ItemStack item : items) {
+            if (item != null) gives.add(item);
+        }
+        if (!gives.isEmpty()) {
+            giveOrDrop(player, BulkOpen.mergeStacks(gives));
+        }
+
+        List<String> allCommands = new ArrayList<>();
+        List<Long> awaitingCommands = new ArrayList<>();
+        for (int i = 0; i < ledgerIds.length; i++) {
+            if (items[i] != null) ledger.itemGiven(ledgerIds[i]);
+            if (commands.get(i).isEmpty()) {
+                ledger.granted(ledgerIds[i]);
+            } else {
+                allCommands.addAll(commands.get(i));
+                awaitingCommands.add(ledgerIds[i]);
+            }
+        }
+        for (int i = 0; i < allCommands.size(); i++) {
+            Runnable afterDispatch = i == allCommands.size() - 1 ? () -> {
+                for (long ledgerId : awaitingCommands) ledger.granted(ledgerId);
+            } : null;
+            commandQueue.enqueue(allCommands.get(i), afterDispatch);
+        }
     }
 
-    private static boolean isAllowedByExplicitTierRules(RewardDefinition r, int tier) {
-        if (r.tiers() != null && !r.tiers().isEmpty()) {
-            return r.tiers().contains(tier);
+    private void giveOrDrop(Player player, ItemStack... stacks) {
+        // The stacks may land in a hand slot.
+        markHeldItemsChanged(player);
+        Map<Integer, ItemStack> remaining = player.getInventory().addItem(stacks);
+        for (ItemStack rem : remaining.values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), rem);
         }
-        if (r.minTier() != null && tier < r.minTier()) return false;
-        if (r.maxTier() != null && tier > r.maxTier()) return false;
-        return true;
     }
 }
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 public record RewardDefinition(
         Material material,
@@ -17,9 +18,17 @@ public record RewardDefinition(
     boolean giveItem,
     List<Integer> tiers,
     Integer minTier,
-    Integer maxTier
+    Integer maxTier,
+    double weight,
+    double value
 ) {
 
+    // Keeps the sum of a tier's weights finite however many rewards share it.
+    public static final double MAX_WEIGHT = 1e12D;
+
+    // Compiled off the main thread and by the offline simulator, where the plugin logger is not at hand.
+    private static final Logger LOGGER = Logger.getLogger("RewardCrate");
+
     public static RewardDefinition fromRawMap(Map<?, ?> raw) {
         String materialStr = asString(raw.get("material"), "STONE");
         Material material = Material.matchMaterial(materialStr);
@@ -63,7 +72,22 @@ public record RewardDefinition(
             giveItem = !(hasCommands && looksLikeCurrencyToken);
         }
 
-        return new RewardDefinition(material, amount, displayName, lore, ench, commands, giveItem, tiers, minTier, maxTier);
+        // Relative chance within a tier's pool; 0 disables the reward without deleting it.
+        double weight = asDouble(raw.get("weight"), 1D);
+        if (!Double.isFinite(weight) || weight < 0D) {
+            LOGGER.warning("Reward " + material + (displayName == null ? "" : " '" + displayName + "'")
+                    + ": weight " + raw.get("weight") + " is not a finite number >= 0; using 0 (never drops).");
+            weight = 0D;
+        } else if (weight > MAX_WEIGHT) {
+            LOGGER.warning("Reward " + material + (displayName == null ? "" : " '" + displayName + "'")
+                    + ": weight " + raw.get("weight") + " is too large; using " + MAX_WEIGHT + ".");
+            weight = MAX_WEIGHT;
+        }
+
+        // Only used for expected-value reports (see RewardSimulator); has no effect in game.
+        double value = asDouble(raw.get("value"), 0D);
+
+        return new RewardDefinition(material, amount, displayName, lore, ench, commands, giveItem, tiers, minTier, maxTier, weight, value);
     }
 
     private static String asString(Object o, String def) {
@@ -81,6 +105,16 @@ public record RewardDefinition(
         }
     }
 
+    private static double asDouble(Object o, double def) {
+        if (o == null) return def;
+        if (o instanceof Number n) return n.doubleValue();
+        try {
+            return Double.parseDouble(String.valueOf(o));
+        } catch (NumberFormatException ignored) {
+            return def;
+        }
+    }
+
     private static List<String> asStringList(Object o) {
         if (o == null) return Collections.emptyList();
         if (o instanceof List<?> list) {
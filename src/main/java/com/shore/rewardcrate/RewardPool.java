@@ -0,0 +1,86 @@
+package com.shore.rewardcrate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+// Weighted reward indices sampled in constant time (Vose's alias method).
+public final class RewardPool {
+
+    private final int[] rewardIndices;
+    private final double[] probability;
+    private final int[] alias;
+
+    private RewardPool(int[] rewardIndices, double[] probability, int[] alias) {
+        this.rewardIndices = rewardIndices;
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    // Entries with weight <= 0 or not finite are dropped.
+    public static RewardPool of(List<Integer> rewardIndices, List<Double> weights) {
+        int count = 0;
+        double total = 0D;
+        for (double w : weights) {
+            if (w > 0D && Double.isFinite(w)) {
+                count++;
+                total += w;
+            }
+        }
+
+        int[] indices = new int[count];
+        double[] scaled = new double[count];
+        int j = 0;
+        for (int i = 0; i < rewardIndices.size(); i++) {
+            double w = weights.get(i);
+            if (!(w > 0D && Double.isFinite(w))) continue;
+            indices[j] = rewardIndices.get(i);
+            scaled[j] = w * count / total;
+            j++;
+        }
+
+        double[] probability = new double[count];
+        int[] alias = new int[count];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < count; i++) {
+            if (scaled[i] < 1D) small.push(i);
+            else large.push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int s = small.pop();
+            int l = large.pop();
+            probability[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1D;
+            if (scaled[l] < 1D) small.push(l);
+            else large.push(l);
+        }
+        // Whatever is left is 1.0 up to floating point error.
+        while (!large.isEmpty()) probability[large.pop()] = 1D;
+        while (!small.isEmpty()) probability[small.pop()] = 1D;
+
+        return new RewardPool(indices, probability, alias);
+    }
+
+    public boolean isEmpty() {
+        return rewardIndices.length == 0;
+    }
+
+    public int size() {
+        return rewardIndices.length;
+    }
+
+    public int rewardIndexAt(int position) {
+        return rewardIndices[position];
+    }
+
+    // -1 if the pool is empty.
+    public int sample(RandomGenerator random) {
+        int n = rewardIndices.length;
+        if (n == 0) return -1;
+        int column = random.nextInt(n);
+        return random.nextDouble() < probability[column] ? rewardIndices[column] : rewardIndices[alias[column]];
+    }
+}
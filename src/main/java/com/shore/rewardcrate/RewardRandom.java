@@ -0,0 +1,72 @@
+package com.shore.rewardcrate;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+public final class RewardRandom {
+
+    public enum Mode {
+        FAST,
+        SECURE,
+        SEEDED;
+
+        static Mode parse(String raw) {
+            if (raw == null) return FAST;
+            try {
+                return Mode.valueOf(raw.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ignored) {
+                return FAST;
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final long seed;
+    private final RandomGenerator secure;
+    private final Map<UUID, RandomGenerator> seededByPlayer = new HashMap<>();
+
+    public RewardRandom(Mode mode, long seed) {
+        this.mode = mode;
+        this.seed = seed;
+        this.secure = mode == Mode.SECURE ? new SecureRandom() : null;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public boolean hasSameSettings(RewardRandom other) {
+        return other != null && mode == other.mode && seed == other.seed;
+    }
+
+    public RandomGenerator forPlayer(UUID playerId) {
+        return switch (mode) {
+            case FAST -> ThreadLocalRandom.current();
+            case SECURE -> secure;
+            case SEEDED -> seededByPlayer.computeIfAbsent(playerId, this::seededFor);
+        };
+    }
+
+    private RandomGenerator seededFor(UUID playerId) {
+        // Mixing the UUID in keeps one player's sequence independent of how other players' rolls interleave.
+        return new SplittableRandom(seed ^ playerId.getMostSignificantBits() * 31L ^ playerId.getLeastSignificantBits());
+    }
+
+    public void forget(UUID playerId) {
+        seededByPlayer.remove(playerId);
+    }
+
+    public void clear() {
+        seededByPlayer.clear();
+    }
+}
@@ -0,0 +1,139 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+// Offline drop-rate simulator:
+// java -cp RewardCrate.jar:paper-api.jar:<paper-api dependencies> com.shore.rewardcrate.RewardSimulator \
+//     plugins/RewardCrate/config.yml [claims-per-tier] [seed]
+public final class RewardSimulator {
+
+    private static final long DEFAULT_CLAIMS = 10_000_000L;
+    // Claims rolled by one fork/join leaf before it stops splitting.
+    private static final long BATCH = 1L << 18;
+    private static final Pattern COLOR_CODES = Pattern.compile("&#[A-Fa-f0-9]{6}|&[0-9A-FK-ORa-fk-or]");
+
+    private RewardSimulator() {}
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: RewardSimulator <config.yml> [claims-per-tier] [seed]");
+            System.exit(2);
+            return;
+        }
+
+        File file = new File(args[0]);
+        if (!file.isFile()) {
+            System.err.println("Config not found: " + file.getAbsolutePath());
+            System.exit(2);
+            return;
+        }
+        long claims = args.length >= 2 ? Long.parseLong(args[1]) : DEFAULT_CLAIMS;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : System.nanoTime();
+        if (claims < 1) claims = 1;
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.setDefaults(CrateConfig.bundledDefaults());
+        try {
+            yaml.load(file);
+        } catch (IOException | InvalidConfigurationException e) {
+            System.err.println("Could not load " + file.getAbsolutePath() + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        RewardTable table = CrateConfig.compile(yaml).rewardTable();
+        if (table.isEmpty()) {
+            System.out.println("No rewards configured.");
+            return;
+        }
+
+        System.out.printf(Locale.ROOT, "%d rewards, max tier %d, coal chance %.2f%%, %,d claims per tier, seed %d, %d threads%n",
+                table.rewards().size(), table.maxTier(), table.coalChance() * 100D, claims, seed, ForkJoinPool.commonPool().getParallelism());
+
+        for (int tier = 1; tier <= table.maxTier(); tier++) {
+            long start = System.nanoTime();
+            long[] counts = ForkJoinPool.commonPool().invoke(new ClaimBatch(table, tier, claims, new SplittableRandom(seed + tier)));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            report(table, tier, claims, counts, elapsedMs);
+        }
+    }
+
+    private static void report(RewardTable table, int tier, long claims, long[] counts, long elapsedMs) {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Tier %d (%,d ms)%n", tier, elapsedMs);
+        System.out.printf(Locale.ROOT, "  %-60s %9.4f%%%n", "COAL", percent(counts[0], claims));
+
+        double expectedValue = 0D;
+        for (int i = 0; i < table.rewards().size(); i++) {
+            long hits = counts[i + 1];
+            if (hits == 0) continue;
+            RewardDefinition reward = table.reward(i);
+            expectedValue += reward.value() * hits / (double) claims;
+            System.out.printf(Locale.ROOT, "  %-60s %9.4f%%%n", "#" + i + " " + label(reward), percent(hits, claims));
+        }
+        System.out.printf(Locale.ROOT, "  expected value per claim: %.2f%n", expectedValue);
+    }
+
+    private static double percent(long hits, long claims) {
+        return hits * 100D / claims;
+    }
+
+    private static String label(RewardDefinition reward) {
+        String name = reward.displayName() == null
+                ? reward.material().name()
+                : COLOR_CODES.matcher(reward.displayName()).replaceAll("").trim();
+        if (reward.commands() != null && !reward.commands().isEmpty()) {
+            name += " [" + reward.commands().get(0) + "]";
+        }
+        return name;
+    }
+
+    // Counts per outcome: slot 0 is coal, slot i + 1 is reward i.
+    private static final class ClaimBatch extends RecursiveTask<long[]> {
+
+        private final RewardTable table;
+        private final int tier;
+        private final long claims;
+        private final SplittableRandom random;
+
+        ClaimBatch(RewardTable table, int tier, long claims, SplittableRandom random) {
+            this.table = table;
+            this.tier = tier;
+            this.claims = claims;
+            this.random = random;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (claims > BATCH) {
+                long half = claims / 2;
+                ClaimBatch left = new ClaimBatch(table, tier, half, random.split());
+                left.fork();
+                long[] right = new ClaimBatch(table, tier, claims - half, random).compute();
+                long[] merged = left.join();
+                for (int i = 0; i < merged.length; i++) merged[i] += right[i];
+                return merged;
+            }
+
+            long[] counts = new long[table.rewards().size() + 1];
+            for (long i = 0; i < claims; i++) {
+                int result = table.roll(tier, random);
+                if (result == RewardTable.COAL) {
+                    counts[0]++;
+                } else if (result >= 0) {
+                    counts[result + 1]++;
+                }
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+public final class RewardTable {
+
+    public static final int COAL = -1;
+    public static final int NO_REWARD = -2;
+
+    private final List<RewardDefinition> rewards;
+    private final int maxTier;
+    private final boolean qualityGating;
+    private final boolean requireTierMatch;
+    private final double coalChance;
+    private final RewardPool[] poolsByTier;
+    private final RewardPool allRewards;
+
+    private RewardTable(List<RewardDefinition> rewards, int maxTier, boolean qualityGating, boolean requireTierMatch,
+                        double coalChance, RewardPool[] poolsByTier, RewardPool allRewards) {
+        this.rewards = rewards;
+        this.maxTier = maxTier;
+        this.qualityGating = qualityGating;
+        this.requireTierMatch = requireTierMatch;
+        this.coalChance = coalChance;
+        this.poolsByTier = poolsByTier;
+        this.allRewards = allRewards;
+    }
+
+    // inferredMaxTier: highest crate item tier, used when tiers.max-tier is not set.
+    public static RewardTable fromConfig(ConfigurationSection cfg, int inferredMaxTier) {
+        ConfigurationSection tiersSection = cfg.getConfigurationSection("tiers");
+        boolean qualityGating = tiersSection == null || tiersSection.getBoolean("quality-gating", true);
+        boolean requireTierMatch = tiersSection != null && tiersSection.getBoolean("require-tier-match", false);
+        double coalChance = tiersSection == null ? 0.25D : tiersSection.getDouble("coal-chance", 0.25D);
+
+        int maxTier = tiersSection == null ? inferredMaxTier : tiersSection.getInt("max-tier", inferredMaxTier);
+
+        List<RewardDefinition> rewards = new ArrayList<>();
+        if (cfg.isList("rewards")) {
+            for (Object raw : cfg.getList("rewards")) {
+                if (!(raw instanceof Map<?, ?> rawMap)) continue;
+                rewards.add(RewardDefinition.fromRawMap(rawMap));
+            }
+        }
+
+        applyHardcodedLootboxRewards(rewards);
+
+        return compile(rewards, maxTier, qualityGating, requireTierMatch, coalChance);
+    }
+
+    public static RewardTable compile(List<RewardDefinition> rewards, int maxTier, boolean qualityGating, boolean requireTierMatch, double coalChance) {
+        List<RewardDefinition> list = List.copyOf(rewards);
+        int cappedMax = Math.max(1, maxTier);
+
+        RewardPool[] pools = new RewardPool[cappedMax + 1];
+        for (int tier = 1; tier <= cappedMax; tier++) {
+            pools[tier] = poolOf(list, eligibleIndices(list, tier, cappedMax, qualityGating, requireTierMatch));
+        }
+
+        List<Integer> all = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) all.add(i);
+
+        double clampedCoal = Math.max(0D, Math.min(1D, coalChance));
+        return new RewardTable(list, cappedMax, qualityGating, requireTierMatch, clampedCoal, pools, poolOf(list, all));
+    }
+
+    public List<RewardDefinition> rewards() {
+        return rewards;
+    }
+
+    public RewardDefinition reward(int index) {
+        return rewards.get(index);
+    }
+
+    public int maxTier() {
+        return maxTier;
+    }
+
+    public boolean qualityGating() {
+        return qualityGating;
+    }
+
+    public boolean requireTierMatch() {
+        return requireTierMatch;
+    }
+
+    public double coalChance() {
+        return coalChance;
+    }
+
+    public boolean isEmpty() {
+        return rewards.isEmpty();
+    }
+
+    // Falls back to every reward when nothing is eligible.
+    public RewardPool poolForTier(int tier) {
+        int capped = Math.max(1, Math.min(tier, maxTier));
+        RewardPool pool = poolsByTier[capped];
+        return pool.isEmpty() ? allRewards : pool;
+    }
+
+    // -1 when there are no rewards.
+    public int pick(int tier, RandomGenerator random) {
+        return poolForTier(tier).sample(random);
+    }
+
+    public int roll(int tier, RandomGenerator random) {
+        if (rewards.isEmpty()) return NO_REWARD;
+        // 25% (configurable) chance to get coal from any present.
+        if (random.nextDouble() < coalChance) return COAL;
+        int index = pick(tier, random);
+        return index < 0 ? NO_REWARD : index;
+    }
+
+    private static void applyHardcodedLootboxRewards(List<RewardDefinition> rewards) {
+        // Per request: hard-code these rewards into the jar so they always exist.
+        // They should NOT give the barrel item; they should only run the command.
+
+        // Note: many lootbox plugins treat the lootbox id as case-sensitive.
+        String vortexCmd = "shorelootboxgive {player} Vortex 1";
+        String celestialCmd = "shorelootboxgive {player} Celestial 1";
+
+        rewards.removeIf(r -> {
+            if (r == null) return false;
+            if (r.material() != Material.BARREL) return false;
+            if (r.commands() == null) return false;
+            for (String cmd : r.commands()) {
+                if (cmd == null) continue;
+                String c = cmd.trim();
+                // Remove any previous hard-coded variants (case differences, etc.) before re-adding.
+                if (c.equalsIgnoreCase(vortexCmd) || c.equalsIgnoreCase(celestialCmd)) return true;
+                if (c.equalsIgnoreCase("shorelootboxgive {player} vortex 1") || c.equalsIgnoreCase("shorelootboxgive {player} celestial 1")) return true;
+            }
+            return false;
+        });
+
+        rewards.add(new RewardDefinition(
+                Material.BARREL,
+                1,
+                "&#00FF46&lVORTEX LOOTBOX",
+                List.of(),
+                List.of(),
+                List.of(vortexCmd),
+                false,
+                List.of(),
+                5,
+                null,
+                1D,
+                0D
+        ));
+
+        rewards.add(new RewardDefinition(
+                Material.BARREL,
+                1,
+                "&#00C7FF&lC&#00C7FF&lE&#00C7FF&lL&#40D2BF&lE&#80DD80&lS&#BFE840&lT&#FFF300&lI&#FFF300&lA&#FFF300&lL &#00C7FF&lL&#00C7FF&lO&#00C7FF&lO&#55D6AA&lT&#AAE455&lB&#FFF300&lO&#FFF300&lX",
+                List.of(),
+                List.of(),
+                List.of(celestialCmd),
+                false,
+                List.of(),
+                5,
+                null,
+                1D,
+                0D
+        ));
+    }
+
+    private static RewardPool poolOf(List<RewardDefinition> rewards, List<Integer> indices) {
+        List<Double> weights = new ArrayList<>(indices.size());
+        for (int index : indices) weights.add(rewards.get(index).weight());
+        return RewardPool.of(indices, weights);
+    }
+
+    private static List<Integer> eligibleIndices(List<RewardDefinition> rewards, int tier, int maxTier, boolean qualityGating, boolean requireTierMatch) {
+        List<Integer> out = new ArrayList<>();
+        int n = rewards.size();
+        if (n == 0) return out;
+
+        // Quality-gating applies only to rewards without explicit tier rules:
+        // higher tiers skip the earlier (worse) part of the reward list.
+        double threshold = (Math.max(1, Math.min(tier, maxTier)) - 1) / (double) maxTier;
+        if (n == 1) threshold = 0D;
+
+        for (int i = 0; i < n; i++) {
+            RewardDefinition r = rewards.get(i);
+            if (hasAnyTierRules(r)) {
+                if (isAllowedByExplicitTierRules(r, tier)) out.add(i);
+                continue;
+            }
+
+            // Strict mode: only rewards with explicit tier rules are eligible.
+            if (requireTierMatch) continue;
+
+            if (!qualityGating) {
+                out.add(i);
+                continue;
+            }
+
+            double frac = (n <= 1) ? 1D : (i / (double) (n - 1));
+            if (frac >= threshold) {
+                out.add(i);
+            }
+        }
+        return out;
+    }
+
+    private static boolean hasAnyTierRules(RewardDefinition r) {
+        return (r.tiers() != null && !r.tiers().isEmpty()) || r.minTier() != null || r.maxTier() != null;
+    }
+
+    private static boolean isAllowedByExplicitTierRules(RewardDefinition r, int tier) {
+        if (r.tiers() != null && !r.tiers().isEmpty()) {
+            return r.tiers().contains(tier);
+        }
+        if (r.minTier() != null && tier < r.minTier()) return false;
+        if (r.maxTier() != null && tier > r.maxTier()) return false;
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.shore.rewardcrate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public final class SessionRegistry {
+
+    private final Map<UUID, CrateSession> sessions = new HashMap<>();
+
+    public CrateSession get(UUID playerId) {
+        CrateSession session = sessions.get(playerId);
+        if (session == null) {
+            session = new CrateSession(playerId);
+            sessions.put(playerId, session);
+        }
+        return session;
+    }
+
+    public CrateSession find(UUID playerId) {
+        return sessions.get(playerId);
+    }
+
+    public CrateSession remove(UUID playerId) {
+        CrateSession session = sessions.remove(playerId);
+        if (session != null) session.end();
+        return session;
+    }
+
+    public Collection<CrateSession> all() {
+        return sessions.values();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void clear() {
+        for (CrateSession session : sessions.values()) {
+            session.end();
+        }
+        sessions.clear();
+    }
+}
@@ -4,31 +4,78 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import net.kyori.adventure.text.format.TextDecoration;
 
-import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class TextUtil {
     private static final LegacyComponentSerializer LEGACY_SECTION = LegacyComponentSerializer.legacySection();
-    private static final Pattern HEX = Pattern.compile("&#([A-Fa-f0-9]{6})");
+
+    // Titles, reward names and lore are the same few dozen strings; Components are immutable so they can be shared.
+    // Lock-free; when it fills up (only if something colorizes ever-new strings) it is simply started over.
+    private static final int CACHE_SIZE = 512;
+    private static final ConcurrentHashMap<String, Component> CACHE = new ConcurrentHashMap<>();
 
     private TextUtil() {}
 
     public static Component colorize(String input) {
         if (input == null) return Component.empty();
 
-        // Paper/Adventure legacy serializer understands the "§x§R§R§G§G§B§B" hex format.
-        // Convert "&#RRGGBB" -> "§x§R§R§G§G§B§B", then convert '&' -> '§'.
-        String s = HEX.matcher(input).replaceAll(match -> {
-            String hex = match.group(1).toLowerCase(Locale.ROOT);
-            StringBuilder out = new StringBuilder("§x");
-            for (char c : hex.toCharArray()) {
-                out.append('§').append(c);
-            }
-            return out.toString();
-        });
+        Component cached = CACHE.get(input);
+        if (cached != null) return cached;
 
-        s = s.replace('&', '§');
-        return LEGACY_SECTION.deserialize(s)
+        Component out = LEGACY_SECTION.deserialize(toLegacySection(input))
             .decoration(TextDecoration.ITALIC, false);
+        if (CACHE.size() >= CACHE_SIZE) CACHE.clear();
+        CACHE.put(input, out);
+        return out;
+    }
+
+    // Paper/Adventure legacy serializer understands the "§x§R§R§G§G§B§B" hex format.
+    // Converts "&#RRGGBB" -> "§x§r§r§g§g§b§b" and every other '&' -> '§' (so "&x&R&R..." and "&a" work too).
+    static String toLegacySection(String input) {
+        int len = input.length();
+        if (input.indexOf('&') < 0) return input;
+
+        // "&#RRGGBB" (8 chars) becomes 14 chars; count them first so the buffer is exactly the result.
+        int size = len;
+        for (int i = input.indexOf('&'); i >= 0; i = input.indexOf('&', i + 1)) {
+            if (i + 7 < len && input.charAt(i + 1) == '#' && isHex(input, i + 2)) {
+                size += 6;
+                i += 7;
+            }
+        }
+
+        char[] out = new char[size];
+        int n = 0;
+        int i = 0;
+        while (i < len) {
+            char c = input.charAt(i);
+            if (c != '&') {
+                out[n++] = c;
+                i++;
+                continue;
+            }
+            if (i + 7 < len && input.charAt(i + 1) == '#' && isHex(input, i + 2)) {
+                out[n++] = '§';
+                out[n++] = 'x';
+                for (int j = i + 2; j < i + 8; j++) {
+                    out[n++] = '§';
+                    out[n++] = Character.toLowerCase(input.charAt(j));
+                }
+                i += 8;
+                continue;
+            }
+            out[n++] = '§';
+            i++;
+        }
+        return new String(out);
+    }
+
+    private static boolean isHex(String s, int from) {
+        for (int j = from; j < from + 6; j++) {
+            char c = s.charAt(j);
+            boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            if (!hex) return false;
+        }
+        return true;
     }
 }
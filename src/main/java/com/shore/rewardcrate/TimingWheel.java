@@ -0,0 +1,144 @@
+package com.shore.rewardcrate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+// Hashed timing wheel for all deferred crate work; one repeating task instead of one BukkitTask per action.
+public final class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    public final class Timeout {
+        private Runnable action;
+        private long rounds;
+        private int slot = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable action) {
+            this.action = action;
+        }
+
+        public void cancel() {
+            if (slot >= 0) unlink(this);
+            // Also covers a timeout that is due this tick but hasn't run yet.
+            action = null;
+        }
+
+        public boolean isPending() {
+            return slot >= 0;
+        }
+    }
+
+    private final Plugin plugin;
+    private final Timeout[] slots = new Timeout[SLOTS];
+    private final List<Timeout> due = new ArrayList<>();
+    private int cursor;
+    private int size;
+    private BukkitTask task;
+
+    public TimingWheel(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    // Minimum 1 tick.
+    public Timeout schedule(long delayTicks, Runnable action) {
+        long delay = Math.max(1L, delayTicks);
+        Timeout timeout = new Timeout(action);
+        timeout.rounds = (delay - 1) >> SLOT_BITS;
+        timeout.slot = (int) ((cursor + delay) & MASK);
+
+        Timeout head = slots[timeout.slot];
+        timeout.next = head;
+        if (head != null) head.prev = timeout;
+        slots[timeout.slot] = timeout;
+        size++;
+
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+        return timeout;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void tick() {
+        cursor = (cursor + 1) & MASK;
+
+        // Unlink everything due before running any of it: actions may cancel or schedule other timeouts.
+        Timeout node = slots[cursor];
+        while (node != null) {
+            Timeout next = node.next;
+            if (node.rounds > 0) {
+                node.rounds--;
+            } else {
+                unlink(node);
+                due.add(node);
+            }
+            node = next;
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+            Timeout timeout = due.get(i);
+            Runnable action = timeout.action;
+            timeout.action = null;
+            if (action == null) continue;
+            try {
+                action.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Deferred crate task failed", e);
+            }
+        }
+        due.clear();
+
+        if (size == 0) {
+            stopTask();
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+        size--;
+    }
+
+    public void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            Timeout node = slots[i];
+            while (node != null) {
+                Timeout next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.slot = -1;
+                node.action = null;
+                node = next;
+            }
+            slots[i] = null;
+        }
+        size = 0;
+        stopTask();
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+}